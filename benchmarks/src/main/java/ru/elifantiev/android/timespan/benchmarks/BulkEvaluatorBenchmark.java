@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan.benchmarks;
+
+
+import org.openjdk.jmh.annotations.*;
+import ru.elifantiev.android.timespan.BulkEvaluator;
+import ru.elifantiev.android.timespan.CompiledSchedule;
+import ru.elifantiev.android.timespan.TimeSpanGroupCollection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of BulkEvaluator with the number of threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkEvaluatorBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"1000000"})
+    public int schedules;
+
+    private CompiledSchedule[] compiled;
+    private boolean[] active;
+    private int[] minutesTillActive;
+    private int[] minutes;
+    private int cursor;
+    private BulkEvaluator evaluator;
+
+    @Setup
+    public void setUp() {
+        // A million distinct bitmaps would take more than a gigabyte, so schedules repeat
+        CompiledSchedule[] distinct = new CompiledSchedule[1000];
+        for (int i = 0; i < distinct.length; i++)
+            distinct[i] = CompiledSchedule.fromGroupCollection(
+                    TimeSpanGroupCollection.valueOf(Schedules.collectionSpec(3, i)));
+        compiled = new CompiledSchedule[schedules];
+        for (int i = 0; i < schedules; i++)
+            compiled[i] = distinct[(int) ((i * 2654435761L) % distinct.length)];
+        active = new boolean[schedules];
+        minutesTillActive = new int[schedules];
+        minutes = Schedules.minutes(64, 5);
+        evaluator = new BulkEvaluator(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        evaluator.shutdown();
+    }
+
+    @Benchmark
+    public void evaluate() {
+        evaluator.evaluate(compiled, minutes[cursor++ & 63], active, minutesTillActive);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan.benchmarks;
+
+
+import org.openjdk.jmh.annotations.*;
+import ru.elifantiev.android.timespan.CompiledSchedule;
+import ru.elifantiev.android.timespan.TimeSpanGroup;
+import ru.elifantiev.android.timespan.TimeSpanGroupCollection;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule evaluation at instants spread over the week. Group benchmarks check every group of
+ * the collection per invocation, collection benchmarks evaluate the collection once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+
+    private static final int MINUTES_MASK = 63;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int groups;
+
+    private TimeSpanGroup[] groupArray;
+    private Set<TimeSpanGroup> collection;
+    private CompiledSchedule compiled;
+    private int[] minutes;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        collection = new LinkedHashSet<TimeSpanGroup>(
+                TimeSpanGroupCollection.valueOf(Schedules.collectionSpec(groups, 3)));
+        groupArray = collection.toArray(new TimeSpanGroup[collection.size()]);
+        compiled = CompiledSchedule.fromGroupCollection(collection);
+        minutes = Schedules.minutes(MINUTES_MASK + 1, 4);
+    }
+
+    private int nextMinute() {
+        return minutes[cursor++ & MINUTES_MASK];
+    }
+
+    @Benchmark
+    public int groupIsActual() {
+        int minute = nextMinute(), active = 0;
+        for (TimeSpanGroup group : groupArray)
+            if (group.isActual(minute))
+                active++;
+        return active;
+    }
+
+    @Benchmark
+    public int groupMinutesTillBecomeAvailable() {
+        int minute = nextMinute(), sum = 0;
+        for (TimeSpanGroup group : groupArray)
+            sum += group.minutesTillBecomeAvailable(minute);
+        return sum;
+    }
+
+    @Benchmark
+    public int getMinutesTillBecomeActive() {
+        return TimeSpanGroupCollection.getMinutesTillBecomeActive(collection, nextMinute());
+    }
+
+    @Benchmark
+    public int getMinutesTillBecomeActiveCompiled() {
+        return compiled.minutesTillActive(nextMinute());
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public int tillMaxContinuousRangeEnd() {
+        return TimeSpanGroupCollection.tillMaxContinuousRangeEnd(collection, nextMinute());
+    }
+
+    @Benchmark
+    public int minutesTillRangeEnd() {
+        return TimeSpanGroupCollection.minutesTillRangeEnd(compiled, nextMinute());
+    }
+
+    @Benchmark
+    public CompiledSchedule compile() {
+        return CompiledSchedule.fromGroupCollection(collection);
+    }
+}
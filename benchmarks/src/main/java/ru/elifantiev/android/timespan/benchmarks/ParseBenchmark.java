@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan.benchmarks;
+
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.elifantiev.android.timespan.TimeSpan;
+import ru.elifantiev.android.timespan.TimeSpanCodec;
+import ru.elifantiev.android.timespan.TimeSpanGroup;
+import ru.elifantiev.android.timespan.TimeSpanGroupCollection;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and serialization. Span and group benchmarks process "groups" items per invocation,
+ * collection benchmarks process one collection of "groups" groups.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int groups;
+
+    private String[] spanSpecs;
+    private String[] groupSpecs;
+    private TimeSpanGroup[] parsedGroups;
+    private String collectionSpec;
+    private Collection<TimeSpanGroup> collection;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        spanSpecs = Schedules.spanSpecs(groups, 1);
+        groupSpecs = Schedules.groupSpecs(groups, 2);
+        parsedGroups = new TimeSpanGroup[groups];
+        for (int i = 0; i < groups; i++)
+            parsedGroups[i] = TimeSpanGroup.valueOf(groupSpecs[i]);
+        collectionSpec = Schedules.collectionSpec(groups, 3);
+        collection = TimeSpanGroupCollection.valueOf(collectionSpec);
+        encoded = ByteBuffer.allocate(TimeSpanCodec.encodedSize(collection));
+        TimeSpanCodec.writeCollection(collection, encoded);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public void timeSpanValueOf(Blackhole blackhole) {
+        for (String spec : spanSpecs)
+            blackhole.consume(TimeSpan.valueOf(spec));
+    }
+
+    @Benchmark
+    public void groupValueOf(Blackhole blackhole) {
+        for (String spec : groupSpecs)
+            blackhole.consume(TimeSpanGroup.valueOf(spec));
+    }
+
+    @Benchmark
+    public void groupToString(Blackhole blackhole) {
+        for (TimeSpanGroup group : parsedGroups)
+            blackhole.consume(group.toString());
+    }
+
+    @Benchmark
+    public Collection<TimeSpanGroup> collectionValueOf() {
+        return TimeSpanGroupCollection.valueOf(collectionSpec);
+    }
+
+    @Benchmark
+    public String collectionToString() {
+        return TimeSpanGroupCollection.toString(collection);
+    }
+
+    @Benchmark
+    public Collection<TimeSpanGroup> collectionDecode() {
+        return TimeSpanCodec.readCollection(encoded.duplicate());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan.benchmarks;
+
+
+import java.util.Random;
+
+/**
+ * Deterministic generator of serialized schedules
+ */
+final class Schedules {
+
+    private Schedules() {
+    }
+
+    /**
+     * @param groups number of groups
+     * @param seed random seed
+     * @return serialized group collection, every group has at least one day and one span
+     */
+    static String collectionSpec(int groups, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < groups; i++)
+            appendGroup(builder, random).append('|');
+        return builder.toString();
+    }
+
+    static String[] groupSpecs(int groups, long seed) {
+        Random random = new Random(seed);
+        String[] result = new String[groups];
+        for (int i = 0; i < groups; i++)
+            result[i] = appendGroup(new StringBuilder(), random).toString();
+        return result;
+    }
+
+    static String[] spanSpecs(int spans, long seed) {
+        Random random = new Random(seed);
+        String[] result = new String[spans];
+        for (int i = 0; i < spans; i++) {
+            int from = random.nextInt(288) * 5;
+            int to = from + random.nextInt(289 - from / 5) * 5;
+            result[i] = from + "-" + to;
+        }
+        return result;
+    }
+
+    /**
+     * @return minutes of week spread over the whole week
+     */
+    static int[] minutes(int count, long seed) {
+        Random random = new Random(seed);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++)
+            result[i] = random.nextInt(7 * 1440);
+        return result;
+    }
+
+    private static StringBuilder appendGroup(StringBuilder builder, Random random) {
+        builder.append(1 + random.nextInt(127)).append(':');
+        int spans = 1 + random.nextInt(4);
+        int from = 0;
+        for (int i = 0; i < spans && from <= 1440; i++) {
+            from += random.nextInt(360 / 5) * 5;
+            int to = Math.min(1440, from + random.nextInt(480 / 5) * 5);
+            if (from > to)
+                break;
+            if (i > 0)
+                builder.append(',');
+            builder.append(from).append('-').append(to);
+            from = to + 5;
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates many compiled schedules at one instant, splitting the array into chunks
+ * which are evaluated in parallel on an executor.
+ */
+public final class BulkEvaluator {
+
+    /**
+     * Minimum number of schedules per chunk, so arrays shorter than twice this
+     * are evaluated on the calling thread
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int chunkSize;
+    private final boolean ownExecutor;
+
+    /**
+     * Creates evaluator with its own fixed thread pool, release it with shutdown()
+     * @param parallelism number of threads
+     */
+    public BulkEvaluator(int parallelism) {
+        this(Executors.newFixedThreadPool(checkParallelism(parallelism)), parallelism, DEFAULT_CHUNK_SIZE, true);
+    }
+
+    /**
+     * @param executor executor to run chunks on, it is not shut down by this evaluator
+     * @param parallelism number of chunks evaluated at once, normally the executor thread count
+     * @param chunkSize minimum number of schedules per chunk
+     */
+    public BulkEvaluator(ExecutorService executor, int parallelism, int chunkSize) {
+        this(executor, parallelism, chunkSize, false);
+    }
+
+    private BulkEvaluator(ExecutorService executor, int parallelism, int chunkSize, boolean ownExecutor) {
+        checkParallelism(parallelism);
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive");
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.ownExecutor = ownExecutor;
+    }
+
+    private static int checkParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism must be positive");
+        return parallelism;
+    }
+
+    public void evaluate(CompiledSchedule[] schedules, long epochMillis, int zoneOffsetMillis,
+                         boolean[] active, int[] minutesTillActive) {
+        evaluate(schedules, WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis), active, minutesTillActive);
+    }
+
+    /**
+     * @param schedules schedules to evaluate
+     * @param minuteOfWeek current minute of week
+     * @param active active[i] is set to whether schedules[i] is active, may be null
+     * @param minutesTillActive minutesTillActive[i] is set to schedules[i].minutesTillActive(),
+     * -1 where that throws, may be null
+     */
+    public void evaluate(final CompiledSchedule[] schedules, final int minuteOfWeek,
+                         final boolean[] active, final int[] minutesTillActive) {
+        int count = schedules.length;
+        if (active != null && active.length < count || minutesTillActive != null && minutesTillActive.length < count)
+            throw new IllegalArgumentException("Result array is shorter than schedule array");
+
+        // Rounded down, so no chunk is smaller than chunkSize
+        int chunks = Math.min(parallelism, count / chunkSize);
+        if (chunks <= 1) {
+            evaluateRange(schedules, 0, count, minuteOfWeek, active, minutesTillActive);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int from = (int) ((long) count * i / chunks);
+            final int to = (int) ((long) count * (i + 1) / chunks);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    evaluateRange(schedules, from, to, minuteOfWeek, active, minutesTillActive);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks))
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating schedules", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void evaluateRange(CompiledSchedule[] schedules, int from, int to, int minuteOfWeek,
+                                      boolean[] active, int[] minutesTillActive) {
+        for (int i = from; i < to; i++) {
+            CompiledSchedule schedule = schedules[i];
+            boolean isActive = schedule.isActive(minuteOfWeek);
+            if (active != null)
+                active[i] = isActive;
+            if (minutesTillActive != null)
+                minutesTillActive[i] = schedule.minutesTillActiveOrNone(minuteOfWeek);
+        }
+    }
+
+    /**
+     * Shuts down the thread pool if this evaluator created it
+     */
+    public void shutdown() {
+        if (ownExecutor)
+            executor.shutdown();
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_DAY;
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_WEEK;
+
+/**
+ * Immutable minute-of-week bitmap folded from a whole group collection.
+ * Bit N is set when the collection is active at minute N of the week.
+ */
+public final class CompiledSchedule {
+
+    private static final int WORDS = (MINUTES_IN_WEEK + 63) >>> 6;
+    private static final int[] NO_STARTS = new int[0];
+
+    private final long[] bits;
+    // Sorted minutes of week where the state differs from the previous minute, see buildTransitions
+    private final int[] transitions;
+    // Sorted minutes of week right after a day with a 1440-1440 span. Such a span is never active,
+    // but getMinutesTillBecomeActive counts its start, so minutesTillActive does too
+    private final int[] phantomStarts;
+    // Some group has no days or no spans, getMinutesTillBecomeActive throws for such collections
+    private final boolean unschedulable;
+
+    private CompiledSchedule(long[] bits, int[] phantomStarts, boolean unschedulable) {
+        this.bits = bits;
+        this.transitions = buildTransitions();
+        this.phantomStarts = phantomStarts;
+        this.unschedulable = unschedulable;
+    }
+
+    private int[] buildTransitions() {
+        int[] result = new int[16];
+        int size = 0;
+        boolean active = isActive(MINUTES_IN_WEEK - 1);
+        int minute = 0;
+        while (minute < MINUTES_IN_WEEK) {
+            int next = nextBit(minute, active ? -1L : 0L);
+            if (next == -1)
+                break;
+            if (size == result.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(result, 0, grown, 0, size);
+                result = grown;
+            }
+            result[size++] = next;
+            active = !active;
+            minute = next;
+        }
+        int[] trimmed = new int[size];
+        System.arraycopy(result, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    /**
+     * Builds a bitmap for the collection. Empty collection means "anytime",
+     * same as in TimeSpanGroupCollection.getMinutesTillBecomeActive
+     * @param groups group collection
+     * @return compiled schedule
+     */
+    public static CompiledSchedule fromGroupCollection(Collection<TimeSpanGroup> groups) {
+        long[] bits = new long[WORDS];
+        int phantomDays = 0;
+        boolean unschedulable = false;
+        if (groups.size() == 0) {
+            setRange(bits, 0, MINUTES_IN_WEEK);
+        } else {
+            for (TimeSpanGroup group : groups) {
+                addGroup(bits, group);
+                phantomDays |= phantomDays(group);
+                unschedulable |= group.isEmpty();
+            }
+        }
+        return new CompiledSchedule(bits, phantomStarts(phantomDays), unschedulable);
+    }
+
+    public static CompiledSchedule fromGroup(TimeSpanGroup group) {
+        long[] bits = new long[WORDS];
+        addGroup(bits, group);
+        return new CompiledSchedule(bits, phantomStarts(phantomDays(group)), group.isEmpty());
+    }
+
+    /**
+     * @return mask of days that have a span starting at 1440
+     */
+    private static int phantomDays(TimeSpanGroup group) {
+        int count = group.getSpanCount();
+        return count > 0 && group.getSpanFrom(count - 1) == MINUTES_IN_DAY ? group.getDayMask() : 0;
+    }
+
+    private static int[] phantomStarts(int days) {
+        if (days == 0)
+            return NO_STARTS;
+        int[] result = new int[Integer.bitCount(days)];
+        int size = 0;
+        // Saturday's phantom start is minute 0 of the week, so it goes first
+        if ((days & (1 << 6)) != 0)
+            result[size++] = 0;
+        for (int day = 0; day < 6; day++)
+            if ((days & (1 << day)) != 0)
+                result[size++] = (day + 1) * MINUTES_IN_DAY;
+        return result;
+    }
+
+    private static void addGroup(long[] bits, TimeSpanGroup group) {
+        int dayMask = group.getDayMask();
+        for (int day = 0; day < 7; day++) {
+            if ((dayMask & (1 << day)) == 0)
+                continue;
+            int dayStart = day * MINUTES_IN_DAY;
+            for (int i = 0; i < group.getSpanCount(); i++) {
+                // timeTo is inclusive and may be 1440, which is never reached by a clock
+                int from = group.getSpanFrom(i);
+                int to = Math.min(group.getSpanTo(i), MINUTES_IN_DAY - 1);
+                if (from <= to)
+                    setRange(bits, dayStart + from, dayStart + to + 1);
+            }
+        }
+    }
+
+    private static void setRange(long[] bits, int from, int to) {
+        int fromWord = from >>> 6, toWord = (to - 1) >>> 6;
+        long fromMask = -1L << from, toMask = -1L >>> -to;
+        if (fromWord == toWord) {
+            bits[fromWord] |= fromMask & toMask;
+        } else {
+            bits[fromWord] |= fromMask;
+            for (int i = fromWord + 1; i < toWord; i++)
+                bits[i] = -1L;
+            bits[toWord] |= toMask;
+        }
+    }
+
+    public boolean isActive(int minuteOfWeek) {
+        return (bits[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    public boolean isActive(Calendar cal) {
+        return isActive(WeekMinutes.fromCalendar(cal));
+    }
+
+    public boolean isActive(long epochMillis, int zoneOffsetMillis) {
+        return isActive(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    /**
+     * Same as TimeSpanGroupCollection.getMinutesTillBecomeActive for the compiled collection
+     * @param minuteOfWeek current minute of week
+     * @return minutes till the schedule becomes active, 0 if it is active right now
+     * @throws IllegalStateException if schedule is never active or some group has no days or no spans
+     */
+    public int minutesTillActive(int minuteOfWeek) {
+        int result = minutesTillActiveOrNone(minuteOfWeek);
+        if (result < 0)
+            throw new IllegalStateException("Wrong time span state");
+        return result;
+    }
+
+    /**
+     * @return same as minutesTillActive, -1 where it throws
+     */
+    int minutesTillActiveOrNone(int minuteOfWeek) {
+        if (unschedulable)
+            return -1;
+        if (isActive(minuteOfWeek))
+            return 0;
+        int result = Integer.MAX_VALUE;
+        if (transitions.length != 0)
+            result = distance(minuteOfWeek, nextTransition(minuteOfWeek));
+        if (phantomStarts.length != 0)
+            result = Math.min(result, nextPhantomStart(minuteOfWeek));
+        return result == Integer.MAX_VALUE ? -1 : result;
+    }
+
+    /**
+     * @return minutes till the first phantom start after the minute, a full week if the only one is at the minute itself
+     */
+    private int nextPhantomStart(int minuteOfWeek) {
+        for (int start : phantomStarts)
+            if (start > minuteOfWeek)
+                return start - minuteOfWeek;
+        return MINUTES_IN_WEEK - minuteOfWeek + phantomStarts[0];
+    }
+
+    public int minutesTillActive(Calendar cal) {
+        return minutesTillActive(WeekMinutes.fromCalendar(cal));
+    }
+
+    public int minutesTillActive(long epochMillis, int zoneOffsetMillis) {
+        return minutesTillActive(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    /**
+     * @param minuteOfWeek current minute of week
+     * @return minutes till the first minute schedule is not active, 0 if it is not active right now,
+     * Integer.MAX_VALUE if the schedule is always active
+     */
+    public int minutesTillInactive(int minuteOfWeek) {
+        if (!isActive(minuteOfWeek))
+            return 0;
+        return minutesTillChange(minuteOfWeek);
+    }
+
+    public int minutesTillInactive(Calendar cal) {
+        return minutesTillInactive(WeekMinutes.fromCalendar(cal));
+    }
+
+    public int minutesTillInactive(long epochMillis, int zoneOffsetMillis) {
+        return minutesTillInactive(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    /**
+     * Lazily lists on/off transitions. Zone offset is taken as constant over the whole horizon.
+     * @param startMillis transitions strictly after the minute containing this instant are listed
+     * @param horizonMillis transitions after this instant are not listed
+     * @param zoneOffsetMillis zone offset
+     * @return iterator over transitions
+     */
+    public TransitionIterator transitions(long startMillis, long horizonMillis, int zoneOffsetMillis) {
+        return new TransitionIterator(this, startMillis, horizonMillis, zoneOffsetMillis);
+    }
+
+    /**
+     * @return minutes till the next state change, Integer.MAX_VALUE if the state never changes
+     */
+    int minutesTillChange(int minuteOfWeek) {
+        if (transitions.length == 0)
+            return Integer.MAX_VALUE;
+        return distance(minuteOfWeek, nextTransition(minuteOfWeek));
+    }
+
+    private int nextTransition(int minuteOfWeek) {
+        int index = nextTransitionIndex(minuteOfWeek);
+        return transitions[index == transitions.length ? 0 : index];
+    }
+
+    int getTransitionCount() {
+        return transitions.length;
+    }
+
+    int getTransition(int index) {
+        return transitions[index];
+    }
+
+    /**
+     * @param minuteOfWeek minute of week
+     * @return index of the first transition after the minute, transition count if there is none till the end of week
+     */
+    int nextTransitionIndex(int minuteOfWeek) {
+        int low = 0, high = transitions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (transitions[mid] <= minuteOfWeek)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int distance(int from, int to) {
+        return to >= from ? to - from : MINUTES_IN_WEEK - from + to;
+    }
+
+    /**
+     * Scans words for the first bit different from {@code flip} pattern
+     * @param from minute to start from
+     * @param flip 0 to look for a set bit, -1 to look for a clear bit
+     * @return minute of week or -1 if none found till the end of week
+     */
+    private int nextBit(int from, long flip) {
+        int word = from >>> 6;
+        long w = (bits[word] ^ flip) & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                int found = (word << 6) + Long.numberOfTrailingZeros(w);
+                return found < MINUTES_IN_WEEK ? found : -1;
+            }
+            if (++word == WORDS)
+                return -1;
+            w = bits[word] ^ flip;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CompiledSchedule that = (CompiledSchedule) o;
+
+        return unschedulable == that.unschedulable &&
+                Arrays.equals(bits, that.bits) &&
+                Arrays.equals(phantomStarts, that.phantomStarts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(bits);
+        result = 31 * result + Arrays.hashCode(phantomStarts);
+        result = 31 * result + (unschedulable ? 1 : 0);
+        return result;
+    }
+}
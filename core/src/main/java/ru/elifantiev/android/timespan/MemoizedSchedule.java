@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.Collection;
+
+/**
+ * "Active now" evaluator which remembers the current state together with the minute it changes.
+ * Until that minute queries are answered from the remembered state, after it the state is
+ * recomputed from the compiled schedule. State is an immutable snapshot published through
+ * a volatile field, so instances can be shared between threads.
+ * Zone offset is fixed for the evaluator lifetime.
+ */
+public final class MemoizedSchedule {
+
+    private final CompiledSchedule schedule;
+    private final Clock clock;
+    private final int zoneOffsetMillis;
+    private volatile State state;
+
+    public MemoizedSchedule(Collection<TimeSpanGroup> groups, Clock clock, int zoneOffsetMillis) {
+        this(CompiledSchedule.fromGroupCollection(groups), clock, zoneOffsetMillis);
+    }
+
+    public MemoizedSchedule(CompiledSchedule schedule, Clock clock, int zoneOffsetMillis) {
+        this.schedule = schedule;
+        this.clock = clock;
+        this.zoneOffsetMillis = zoneOffsetMillis;
+    }
+
+    public CompiledSchedule getSchedule() {
+        return schedule;
+    }
+
+    public boolean isActive() {
+        return currentState(currentMinute()).active;
+    }
+
+    /**
+     * Same as CompiledSchedule.minutesTillActive for the current minute
+     * @return minutes till the schedule becomes active, 0 if it is active right now
+     * @throws IllegalStateException if schedule is never active or some group has no days or no spans
+     */
+    public int minutesTillActive() {
+        long now = currentMinute();
+        State current = currentState(now);
+        if (!current.active && now >= current.activeAt) {
+            // Reached the start of a 1440-1440 span, it does not change the state
+            current = compute(now);
+            state = current;
+        }
+        if (current.activeAt == Long.MAX_VALUE)
+            throw new IllegalStateException("Wrong time span state");
+        return current.active ? 0 : (int) (current.activeAt - now);
+    }
+
+    /**
+     * @return minutes till the first minute schedule is not active, 0 if it is not active right now,
+     * Integer.MAX_VALUE if the schedule is always active
+     */
+    public int minutesTillInactive() {
+        long now = currentMinute();
+        State current = currentState(now);
+        if (!current.active)
+            return 0;
+        if (current.until == Long.MAX_VALUE)
+            return Integer.MAX_VALUE;
+        return (int) (current.until - now);
+    }
+
+    /**
+     * @return instant of the next state change, Long.MAX_VALUE if state never changes
+     */
+    public long getNextChangeMillis() {
+        State current = currentState(currentMinute());
+        return current.until == Long.MAX_VALUE ? Long.MAX_VALUE : WeekMinutes.toEpochMillis(current.until, zoneOffsetMillis);
+    }
+
+    private State currentState(long now) {
+        State current = state;
+        if (current == null || now < current.from || now >= current.until) {
+            // Concurrent callers may both recompute, they get equal snapshots
+            current = compute(now);
+            state = current;
+        }
+        return current;
+    }
+
+    private State compute(long now) {
+        int minuteOfWeek = WeekMinutes.fromLocalMinute(now);
+        boolean active = schedule.isActive(minuteOfWeek);
+        int change = schedule.minutesTillChange(minuteOfWeek);
+        int wait = schedule.minutesTillActiveOrNone(minuteOfWeek);
+        return new State(active, now, change == Integer.MAX_VALUE ? Long.MAX_VALUE : now + change,
+                wait < 0 ? Long.MAX_VALUE : now + wait);
+    }
+
+    private long currentMinute() {
+        return WeekMinutes.localMinute(clock.currentTimeMillis(), zoneOffsetMillis);
+    }
+
+    private static final class State {
+        final boolean active;
+        // Local minutes since epoch, state holds for from <= minute < until
+        final long from;
+        final long until;
+        // Local minute minutesTillActive counts to, Long.MAX_VALUE where it throws
+        final long activeAt;
+
+        State(boolean active, long from, long until, long activeAt) {
+            this.active = active;
+            this.from = from;
+            this.until = until;
+            this.activeAt = activeAt;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.BitSet;
+import java.util.TimeZone;
+
+/**
+ * Batch evaluation: one schedule against many instants, many schedules against one instant.
+ */
+public final class ScheduleBatch {
+
+    private static final long MILLIS_IN_HOUR = 60 * 60 * 1000L;
+
+    private ScheduleBatch() {
+    }
+
+    /**
+     * @param schedule compiled schedule
+     * @param epochMillis instants to check
+     * @param zoneOffsetMillis zone offset, same for all instants
+     * @param result result[i] is set to whether the schedule is active at epochMillis[i]
+     */
+    public static void isActive(CompiledSchedule schedule, long[] epochMillis, int zoneOffsetMillis, boolean[] result) {
+        for (int i = 0; i < epochMillis.length; i++)
+            result[i] = schedule.isActive(WeekMinutes.fromEpochMillis(epochMillis[i], zoneOffsetMillis));
+    }
+
+    /**
+     * Zone offsets are looked up once per hour of the instants, not once per instant,
+     * so clustered instants (e.g. log records) convert cheaply.
+     * @param schedule compiled schedule
+     * @param epochMillis instants to check
+     * @param zone time zone of the schedule
+     * @param result result[i] is set to whether the schedule is active at epochMillis[i]
+     */
+    public static void isActive(CompiledSchedule schedule, long[] epochMillis, TimeZone zone, boolean[] result) {
+        OffsetCache offsets = new OffsetCache(zone);
+        for (int i = 0; i < epochMillis.length; i++) {
+            long instant = epochMillis[i];
+            result[i] = schedule.isActive(WeekMinutes.fromEpochMillis(instant, offsets.getOffset(instant)));
+        }
+    }
+
+    /**
+     * @return bit i is set if the schedule is active at epochMillis[i]
+     */
+    public static BitSet isActive(CompiledSchedule schedule, long[] epochMillis, TimeZone zone) {
+        BitSet result = new BitSet(epochMillis.length);
+        OffsetCache offsets = new OffsetCache(zone);
+        for (int i = 0; i < epochMillis.length; i++) {
+            long instant = epochMillis[i];
+            if (schedule.isActive(WeekMinutes.fromEpochMillis(instant, offsets.getOffset(instant))))
+                result.set(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param schedules compiled schedules
+     * @param epochMillis instant to check
+     * @param zoneOffsetMillis zone offset
+     * @param result result[i] is set to whether schedules[i] is active at the instant
+     */
+    public static void isActive(CompiledSchedule[] schedules, long epochMillis, int zoneOffsetMillis, boolean[] result) {
+        int minuteOfWeek = WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis);
+        for (int i = 0; i < schedules.length; i++)
+            result[i] = schedules[i].isActive(minuteOfWeek);
+    }
+
+    /**
+     * @return bit i is set if schedules[i] is active at the instant
+     */
+    public static BitSet isActive(CompiledSchedule[] schedules, long epochMillis, int zoneOffsetMillis) {
+        int minuteOfWeek = WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis);
+        BitSet result = new BitSet(schedules.length);
+        for (int i = 0; i < schedules.length; i++)
+            if (schedules[i].isActive(minuteOfWeek))
+                result.set(i);
+        return result;
+    }
+
+    /**
+     * Remembers the zone offset for the last seen hour if it does not change within that hour
+     */
+    private static final class OffsetCache {
+
+        private final TimeZone zone;
+        private long hour = Long.MIN_VALUE;
+        private int offset;
+        private boolean uniform;
+
+        OffsetCache(TimeZone zone) {
+            this.zone = zone;
+        }
+
+        int getOffset(long instant) {
+            long instantHour = instant / MILLIS_IN_HOUR;
+            if (instant % MILLIS_IN_HOUR < 0)
+                instantHour--;
+            if (instantHour != hour) {
+                hour = instantHour;
+                long hourStart = instantHour * MILLIS_IN_HOUR;
+                offset = zone.getOffset(hourStart);
+                uniform = offset == zone.getOffset(hourStart + MILLIS_IN_HOUR - 1);
+            }
+            return uniform ? offset : zone.getOffset(instant);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_DAY;
+
+/**
+ * Read-only flyweight over a file of encoded schedules (group collections).
+ * Schedules are evaluated directly against the encoded bytes, no TimeSpanGroup objects are created.
+ * <pre>
+ * header:  magic(int) count(int) offset(int) * (count + 1)
+ * records: TimeSpanCodec collection encoding
+ * </pre>
+ * Evaluation methods use absolute reads only, so one instance can be shared between threads.
+ * Malformed records result in IllegalArgumentException, the same way TimeSpanCodec reports them.
+ */
+public final class ScheduleFile {
+
+    private static final int MAGIC = 0x54534346;
+    private static final int HEADER_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private ScheduleFile(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not a schedule file");
+        this.buffer = buffer;
+        this.count = buffer.getInt(4);
+    }
+
+    public static ScheduleFile open(File file) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            return new ScheduleFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            stream.close();
+        }
+    }
+
+    public static ScheduleFile wrap(ByteBuffer buffer) {
+        return new ScheduleFile(buffer);
+    }
+
+    public static void write(List<? extends Collection<TimeSpanGroup>> schedules, File file) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + (schedules.size() + 1) * 4);
+            header.putInt(MAGIC).putInt(schedules.size());
+            int offset = header.capacity();
+            for (Collection<TimeSpanGroup> schedule : schedules) {
+                header.putInt(offset);
+                offset += TimeSpanCodec.encodedSize(schedule);
+            }
+            header.putInt(offset);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer record = ByteBuffer.allocate(256);
+            for (Collection<TimeSpanGroup> schedule : schedules) {
+                int size = TimeSpanCodec.encodedSize(schedule);
+                if (record.capacity() < size)
+                    record = ByteBuffer.allocate(size);
+                record.clear();
+                TimeSpanCodec.writeCollection(schedule, record);
+                record.flip();
+                writeFully(channel, record);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining())
+            channel.write(data);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes a schedule into groups, for the rare cases it has to be edited
+     */
+    public List<TimeSpanGroup> get(int id) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(recordOffset(id));
+        return TimeSpanCodec.readCollection(record);
+    }
+
+    /**
+     * Same as checking TimeSpanGroup.isActual for every group of the schedule.
+     * Empty schedule is active anytime.
+     */
+    public boolean isActive(int id, int minuteOfWeek) {
+        int pos = recordOffset(id) + 1;
+        long next = varintAt(pos);
+        int groups = value(next);
+        pos = position(next);
+        if (groups == 0)
+            return true;
+
+        int dayBit = 1 << WeekMinutes.dayOfWeek(minuteOfWeek);
+        int now = WeekMinutes.minuteOfDay(minuteOfWeek);
+        for (int g = 0; g < groups; g++) {
+            int dayMask = dayMaskAt(pos++);
+            next = varintAt(pos);
+            int spans = value(next);
+            pos = position(next);
+            boolean today = (dayMask & dayBit) != 0;
+            int to = 0;
+            for (int s = 0; s < spans; s++) {
+                next = varintAt(pos);
+                int from = to + value(next);
+                next = varintAt(position(next));
+                int prev = to;
+                to = from + value(next);
+                pos = position(next);
+                checkSpan(prev, from, to);
+                if (today && from <= now && now <= to)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as TimeSpanGroupCollection.getMinutesTillBecomeActive for the decoded schedule
+     * @throws IllegalStateException if some group of the schedule has no days or no spans
+     */
+    public int minutesTillActive(int id, int minuteOfWeek) {
+        int pos = recordOffset(id) + 1;
+        long next = varintAt(pos);
+        int groups = value(next);
+        pos = position(next);
+        if (groups == 0)
+            return 0;
+
+        int dayOfWeek = WeekMinutes.dayOfWeek(minuteOfWeek);
+        int now = WeekMinutes.minuteOfDay(minuteOfWeek);
+        int minWait = Integer.MAX_VALUE;
+        for (int g = 0; g < groups; g++) {
+            int dayMask = dayMaskAt(pos++);
+            next = varintAt(pos);
+            int spans = value(next);
+            pos = position(next);
+            boolean today = (dayMask & (1 << dayOfWeek)) != 0;
+            int firstFrom = -1, wait = -1;
+            int to = 0;
+            for (int s = 0; s < spans; s++) {
+                next = varintAt(pos);
+                int from = to + value(next);
+                next = varintAt(position(next));
+                int prev = to;
+                to = from + value(next);
+                pos = position(next);
+                checkSpan(prev, from, to);
+                if (firstFrom == -1)
+                    firstFrom = from;
+                if (today && wait == -1) {
+                    if (from <= now && now <= to)
+                        wait = 0;
+                    else if (from > now)
+                        wait = from - now;
+                }
+            }
+            if (wait == -1) {
+                int myDays = (dayMask | (dayMask << 7)) >> (dayOfWeek + 1);
+                if (myDays == 0 || firstFrom == -1)
+                    throw new IllegalStateException("Wrong time span state");
+                wait = (Integer.numberOfTrailingZeros(myDays) + 1) * MINUTES_IN_DAY + firstFrom - now;
+            }
+            if (wait < minWait)
+                minWait = wait;
+        }
+        return minWait;
+    }
+
+    private int recordOffset(int id) {
+        if (id < 0 || id >= count)
+            throw new IndexOutOfBoundsException("Schedule id: " + id + ", count: " + count);
+        return buffer.getInt(HEADER_SIZE + id * 4);
+    }
+
+    private int dayMaskAt(int pos) {
+        int dayMask = buffer.get(pos);
+        if (dayMask < 0)
+            throw new IllegalArgumentException("Invalid day mask: " + dayMask);
+        return dayMask;
+    }
+
+    /**
+     * Same checks as TimeSpanCodec.readGroup does
+     */
+    private static void checkSpan(int prevTo, int from, int to) {
+        if (from < prevTo || to < from || to > MINUTES_IN_DAY)
+            throw new IllegalArgumentException("Malformed span: " + from + "-" + to);
+    }
+
+    /**
+     * @return decoded value in the high half, position after the varint in the low half
+     */
+    private long varintAt(int pos) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(pos++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return ((long) result << 32) | pos;
+        }
+    }
+
+    private static int value(long varint) {
+        return (int) (varint >>> 32);
+    }
+
+    private static int position(long varint) {
+        return (int) varint;
+    }
+}
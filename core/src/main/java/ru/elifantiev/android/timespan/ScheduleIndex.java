@@ -0,0 +1,274 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_WEEK;
+
+/**
+ * Inverted index from 5 minute slot of the week (the editor snapping step) to ids of schedules
+ * active in that slot. Every slot keeps two id sets: schedules active during the whole
+ * slot and schedules active during a part of it. Only the latter are checked against their
+ * bitmap on query, so a query costs about the number of results. A set is a sorted id array
+ * while sparse and turns into a bitset when dense, so slots shared by most schedules cost
+ * a bit per id instead of an int.
+ * Not thread-safe.
+ */
+public final class ScheduleIndex {
+
+    public static final int SLOT_MINUTES = 5;
+    public static final int SLOT_COUNT = MINUTES_IN_WEEK / SLOT_MINUTES;
+
+    private static final int FULL_SLOT = (1 << SLOT_MINUTES) - 1;
+
+    private final IdSet[] full = new IdSet[SLOT_COUNT];
+    private final IdSet[] partial = new IdSet[SLOT_COUNT];
+    private CompiledSchedule[] schedules = new CompiledSchedule[16];
+    private int size;
+
+    public ScheduleIndex() {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            full[i] = new IdSet();
+            partial[i] = new IdSet();
+        }
+    }
+
+    /**
+     * Adds schedule to the index, replacing the one previously added with the same id
+     * @param id non-negative schedule id
+     * @param schedule compiled schedule
+     */
+    public void add(int id, CompiledSchedule schedule) {
+        if (id < 0)
+            throw new IllegalArgumentException("Schedule id must be non-negative: " + id);
+        remove(id);
+        if (id >= schedules.length) {
+            CompiledSchedule[] grown = new CompiledSchedule[Math.max(id + 1, schedules.length * 2)];
+            System.arraycopy(schedules, 0, grown, 0, schedules.length);
+            schedules = grown;
+        }
+        schedules[id] = schedule;
+        size++;
+
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int mask = slotMask(schedule, slot);
+            if (mask == FULL_SLOT)
+                full[slot].add(id);
+            else if (mask != 0)
+                partial[slot].add(id);
+        }
+    }
+
+    /**
+     * @param id schedule id
+     * @return true if schedule was in the index
+     */
+    public boolean remove(int id) {
+        if (id < 0 || id >= schedules.length || schedules[id] == null)
+            return false;
+        CompiledSchedule schedule = schedules[id];
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int mask = slotMask(schedule, slot);
+            if (mask == FULL_SLOT)
+                full[slot].remove(id);
+            else if (mask != 0)
+                partial[slot].remove(id);
+        }
+        schedules[id] = null;
+        size--;
+        return true;
+    }
+
+    public CompiledSchedule get(int id) {
+        return id >= 0 && id < schedules.length ? schedules[id] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param minuteOfWeek minute of week
+     * @return sorted ids of schedules active at that minute
+     */
+    public int[] activeAt(int minuteOfWeek) {
+        int slot = minuteOfWeek / SLOT_MINUTES;
+        IdSet whole = full[slot], part = partial[slot];
+        int[] result = new int[whole.size + part.size];
+        int count = 0;
+        int i = whole.first(), j = part.first();
+        while (i != -1 || j != -1) {
+            if (j == -1 || i != -1 && whole.idAt(i) < part.idAt(j)) {
+                result[count++] = whole.idAt(i);
+                i = whole.next(i);
+            } else {
+                int id = part.idAt(j);
+                if (schedules[id].isActive(minuteOfWeek))
+                    result[count++] = id;
+                j = part.next(j);
+            }
+        }
+        if (count == result.length)
+            return result;
+        int[] trimmed = new int[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    public int[] activeAt(long epochMillis, int zoneOffsetMillis) {
+        return activeAt(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    /**
+     * @return bit N set when the schedule is active at minute N of the slot
+     */
+    private static int slotMask(CompiledSchedule schedule, int slot) {
+        int mask = 0;
+        int start = slot * SLOT_MINUTES;
+        for (int i = 0; i < SLOT_MINUTES; i++)
+            if (schedule.isActive(start + i))
+                mask |= 1 << i;
+        return mask;
+    }
+
+    /**
+     * Set of ids, kept as a sorted array while sparse and as a bitset once the array would take
+     * more memory than the bitset, like the array and bitmap containers of Roaring bitmaps.
+     * Ids are traversed by position: array index or the id itself, -1 past the end.
+     */
+    private static final class IdSet {
+
+        private static final int[] EMPTY = new int[0];
+
+        // Exactly one of ids and words is not null
+        private int[] ids = EMPTY;
+        private long[] words;
+        int size;
+
+        void add(int id) {
+            if (words != null) {
+                int word = id >>> 6;
+                if (word >= words.length) {
+                    long[] grown = new long[Math.max(word + 1, words.length * 2)];
+                    System.arraycopy(words, 0, grown, 0, words.length);
+                    words = grown;
+                }
+                long bit = 1L << id;
+                if ((words[word] & bit) == 0) {
+                    words[word] |= bit;
+                    size++;
+                }
+                return;
+            }
+            int pos = search(id);
+            if (pos >= 0)
+                return;
+            pos = -pos - 1;
+            if (size == ids.length) {
+                int[] grown = new int[Math.max(4, size * 2)];
+                System.arraycopy(ids, 0, grown, 0, size);
+                ids = grown;
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+            // 4 bytes per id against 8 bytes per 64 ids up to the largest one
+            if (size > 2 * wordCount(ids[size - 1]))
+                toBitmap();
+        }
+
+        void remove(int id) {
+            if (words != null) {
+                int word = id >>> 6;
+                long bit = 1L << id;
+                if (word >= words.length || (words[word] & bit) == 0)
+                    return;
+                words[word] &= ~bit;
+                size--;
+                // Converting back at half the threshold avoids flapping around it
+                if (size < wordCount(words.length * 64 - 1))
+                    toArray();
+                return;
+            }
+            int pos = search(id);
+            if (pos < 0)
+                return;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+
+        int first() {
+            return words != null ? nextSetBit(0) : size > 0 ? 0 : -1;
+        }
+
+        int next(int position) {
+            if (words != null)
+                return nextSetBit(position + 1);
+            return position + 1 < size ? position + 1 : -1;
+        }
+
+        int idAt(int position) {
+            return words != null ? position : ids[position];
+        }
+
+        private int nextSetBit(int from) {
+            int word = from >>> 6;
+            if (word >= words.length)
+                return -1;
+            long bits = words[word] & (-1L << from);
+            while (bits == 0) {
+                if (++word == words.length)
+                    return -1;
+                bits = words[word];
+            }
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        private void toBitmap() {
+            words = new long[wordCount(ids[size - 1])];
+            for (int i = 0; i < size; i++)
+                words[ids[i] >>> 6] |= 1L << ids[i];
+            ids = null;
+        }
+
+        private void toArray() {
+            ids = new int[Math.max(4, size)];
+            int count = 0;
+            for (int position = nextSetBit(0); position != -1; position = nextSetBit(position + 1))
+                ids[count++] = position;
+            words = null;
+        }
+
+        private static int wordCount(int maxId) {
+            return (maxId >>> 6) + 1;
+        }
+
+        private int search(int id) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (ids[mid] < id)
+                    low = mid + 1;
+                else if (ids[mid] > id)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package ru.elifantiev.android.timespan;
 
 
+import java.io.IOException;
 import java.util.Calendar;
 
 public class TimeSpan implements Comparable<TimeSpan> {
@@ -43,24 +44,11 @@ public class TimeSpan implements Comparable<TimeSpan> {
     }
 
     public static TimeSpan valueOf(String serialized) {
-        int timeSplit = serialized.indexOf('-');
-
-        if(timeSplit == -1)
-            throw new IllegalArgumentException("Trying to parse from wrong format");
-
-        int timeFrom, timeTo;
-        try {
-            timeFrom = Integer.valueOf(serialized.substring(0, timeSplit));
-            timeTo = Integer.valueOf(serialized.substring(timeSplit + 1));
-
-            if(timeFrom > timeTo)
-                throw new IllegalArgumentException("Ranges are reversed");
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException(e.getMessage());
-        } catch(StringIndexOutOfBoundsException e) {
-            throw new IllegalArgumentException(e.getMessage());
-        }
-        return new TimeSpan(timeFrom, timeTo);
+        TimeSpanParser parser = new TimeSpanParser();
+        TimeSpan result = parser.parseSpan(serialized, 0, serialized.length());
+        if(result == null)
+            throw parser.toException(serialized);
+        return result;
     }
 
     static int getCurrentMinutes(Calendar cal) {
@@ -70,22 +58,69 @@ public class TimeSpan implements Comparable<TimeSpan> {
     }
 
     public int minutesTillBecomeActual(Calendar cal) {
-        if(isActual(cal))
+        return minutesTillBecomeActual(getCurrentMinutes(cal));
+    }
+
+    public int minutesTillBecomeActual(long epochMillis, int zoneOffsetMillis) {
+        return minutesTillBecomeActual(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    public int minutesTillBecomeActual(int minuteOfWeek) {
+        if(isActual(minuteOfWeek))
             return 0;
         else {
-            int val = getCurrentMinutes(cal);
+            int val = WeekMinutes.minuteOfDay(minuteOfWeek);
             return timeFrom - val;
         }
     }
 
     public boolean isActual(Calendar cal) {
-        int val = getCurrentMinutes(cal);
+        return isActual(getCurrentMinutes(cal));
+    }
+
+    public boolean isActual(long epochMillis, int zoneOffsetMillis) {
+        return isActual(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    public boolean isActual(int minuteOfWeek) {
+        int val = WeekMinutes.minuteOfDay(minuteOfWeek);
         return timeFrom <= val && val <= timeTo;
     }
 
     @Override
     public String toString() {
-        return new StringBuilder().append(timeFrom).append("-").append(timeTo).toString();
+        StringBuilder builder = new StringBuilder();
+        writeTo(builder);
+        return builder.toString();
+    }
+
+    public void writeTo(Appendable out) throws IOException {
+        appendNumber(out, timeFrom);
+        out.append('-');
+        appendNumber(out, timeTo);
+    }
+
+    public void writeTo(StringBuilder out) {
+        out.append(timeFrom).append('-').append(timeTo);
+    }
+
+    /**
+     * Writes decimal digits of the value straight to the output, without creating a string
+     */
+    static void appendNumber(Appendable out, int value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+            if (value == Integer.MIN_VALUE) {
+                out.append("2147483648");
+                return;
+            }
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            out.append((char) ('0' + value / divisor % 10));
     }
 
     public String toReadableString() {
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary encoding of groups and group collections.
+ * <pre>
+ * collection: version(1 byte) groupCount(varint) group*
+ * group:      dayMask(1 byte) spanCount(varint) (from(varint) length(varint))*
+ * </pre>
+ * Span starts are stored as a delta from the previous span end (from the day start for the
+ * first span), span ends as a delta from the span start. Varints are unsigned LEB128, so
+ * a typical span takes 2 to 4 bytes.
+ * Truncated input results in java.nio.BufferUnderflowException, malformed input in
+ * IllegalArgumentException.
+ */
+public final class TimeSpanCodec {
+
+    public static final int VERSION = 1;
+
+    private TimeSpanCodec() {
+    }
+
+    public static void writeCollection(Collection<TimeSpanGroup> groups, ByteBuffer out) {
+        out.put((byte) VERSION);
+        writeVarint(out, groups.size());
+        for (TimeSpanGroup group : groups)
+            writeGroup(group, out);
+    }
+
+    public static List<TimeSpanGroup> readCollection(ByteBuffer in) {
+        int version = in.get() & 0xFF;
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported encoding version: " + version);
+        int count = readVarint(in);
+        List<TimeSpanGroup> result = new ArrayList<TimeSpanGroup>(Math.min(count, in.remaining()));
+        for (int i = 0; i < count; i++)
+            result.add(readGroup(in));
+        return result;
+    }
+
+    /**
+     * Writes a single group without version header
+     */
+    public static void writeGroup(TimeSpanGroup group, ByteBuffer out) {
+        out.put((byte) group.getDayMask());
+        int count = group.getSpanCount();
+        writeVarint(out, count);
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            int from = group.getSpanFrom(i), to = group.getSpanTo(i);
+            writeVarint(out, from - prev);
+            writeVarint(out, to - from);
+            prev = to;
+        }
+    }
+
+    /**
+     * Reads a single group written by writeGroup
+     */
+    public static TimeSpanGroup readGroup(ByteBuffer in) {
+        int dayMask = in.get();
+        if (dayMask < 0 || dayMask > TimeSpanGroup.EVERYDAY)
+            throw new IllegalArgumentException("Invalid day mask: " + dayMask);
+        int count = readVarint(in);
+        if (count > in.remaining())
+            throw new IllegalArgumentException("Invalid span count: " + count);
+        int[] pairs = new int[count * 2];
+        int prev = 0;
+        for (int i = 0; i < count * 2; i += 2) {
+            pairs[i] = prev + readVarint(in);
+            pairs[i + 1] = pairs[i] + readVarint(in);
+            if (pairs[i] < prev || pairs[i + 1] < pairs[i])
+                throw new IllegalArgumentException("Span bounds overflow");
+            // Parser rejects these, see TimeSpanParser.ERROR_SPAN_OUT_OF_DAY
+            if (pairs[i + 1] > TimeSpan.FULL_DAY.getTimeTo())
+                throw new IllegalArgumentException("Span out of day: " + pairs[i] + "-" + pairs[i + 1]);
+            prev = pairs[i + 1];
+        }
+        return new TimeSpanGroup(dayMask, pairs, count);
+    }
+
+    public static int encodedSize(Collection<TimeSpanGroup> groups) {
+        int size = 1 + varintSize(groups.size());
+        for (TimeSpanGroup group : groups)
+            size += encodedSize(group);
+        return size;
+    }
+
+    public static int encodedSize(TimeSpanGroup group) {
+        int count = group.getSpanCount();
+        int size = 1 + varintSize(count);
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            int from = group.getSpanFrom(i), to = group.getSpanTo(i);
+            size += varintSize(from - prev) + varintSize(to - from);
+            prev = to;
+        }
+        return size;
+    }
+
+    static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (result < 0)
+                    break;
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Days of week with the time spans active on them.
+ * <p>
+ * The class does not depend on Android. toReadableString(Context) is now
+ * TimeSpanGroupFormatter.toReadableString(group, context) in the Android library, and
+ * fromVisualSpanCollection is replaced by fromSpanCollection, TimeSpanGroupEditor.getValue()
+ * does the conversion of edited spans.
+ */
+public class TimeSpanGroup implements Comparable<TimeSpanGroup> {
+
+    static final int SUNDAY = 1;         // 
+    static final int MONDAY = 2;         // 
+    static final int THUESDAY = 4;       // 
+    static final int WEDNESDAY = 8;      // 
+    static final int THURSDAY = 16;      // 
+    static final int FRIDAY = 32;        // 
+    static final int SATURDAY = 64;      // 
+    static final int EVERYDAY = 127;
+
+    private static final int[] NO_SPANS = new int[0];
+
+    // Sorted from-to pairs, overlapping and adjacent spans are merged. Never modified after construction.
+    private final int[] spans;
+    private final int dayMask;
+
+    TimeSpanGroup() {
+        this(EVERYDAY);
+    }
+
+    TimeSpanGroup(int dayMask) {
+        this.dayMask = dayMask;
+        this.spans = NO_SPANS;
+    }
+
+    /**
+     * @throws IllegalArgumentException if some span starts after it ends
+     */
+    TimeSpanGroup(int dayMask, Collection<TimeSpan> spans) {
+        this.dayMask = dayMask;
+        int[] pairs = new int[spans.size() * 2];
+        int count = 0;
+        for (TimeSpan span : spans) {
+            pairs[count++] = span.getTimeFrom();
+            pairs[count++] = span.getTimeTo();
+        }
+        this.spans = mergeSpans(pairs, count / 2);
+    }
+
+    /**
+     * @param dayMask day mask
+     * @param pairs from-to pairs, in any order, not retained
+     * @param count number of pairs to take
+     * @throws IllegalArgumentException if some pair starts after it ends
+     */
+    TimeSpanGroup(int dayMask, int[] pairs, int count) {
+        this.dayMask = dayMask;
+        this.spans = mergeSpans(pairs, count);
+    }
+
+    private static int[] mergeSpans(int[] pairs, int count) {
+        if (count == 0)
+            return NO_SPANS;
+
+        if (isSortedAndDisjoint(pairs, count)) {
+            int[] result = new int[count * 2];
+            System.arraycopy(pairs, 0, result, 0, count * 2);
+            return result;
+        }
+
+        // both ends are non-negative, so packed longs sort as (from, to)
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            int from = pairs[i * 2], to = pairs[i * 2 + 1];
+            if (from > to)
+                throw new IllegalArgumentException("Span starts after it ends: " + from + "-" + to);
+            packed[i] = ((long) from << 32) | to;
+        }
+        Arrays.sort(packed);
+
+        int[] merged = new int[count * 2];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int from = (int) (packed[i] >>> 32), to = (int) packed[i];
+            // minutes are discrete and ends are inclusive, so 0-600 and 601-900 make 0-900
+            if (size > 0 && from <= merged[size - 1] + 1) {
+                if (to > merged[size - 1])
+                    merged[size - 1] = to;
+            } else {
+                merged[size++] = from;
+                merged[size++] = to;
+            }
+        }
+        if (size == merged.length)
+            return merged;
+
+        int[] result = new int[size];
+        System.arraycopy(merged, 0, result, 0, size);
+        return result;
+    }
+
+    private static boolean isSortedAndDisjoint(int[] pairs, int count) {
+        int prevTo = -2;
+        for (int i = 0; i < count * 2; i += 2) {
+            if (pairs[i] <= prevTo + 1 || pairs[i] > pairs[i + 1])
+                return false;
+            prevTo = pairs[i + 1];
+        }
+        return true;
+    }
+
+    public static TimeSpanGroup fromSpanCollection(int dayMask, Collection<TimeSpan> spans) throws IllegalArgumentException {
+        if (dayMask < 0 || dayMask > EVERYDAY)
+            throw new IllegalArgumentException("Incorrect days mask");
+
+        return new TimeSpanGroup(dayMask, spans);
+    }
+
+    public static TimeSpanGroup anytimeGroup() {
+        return new TimeSpanGroup(EVERYDAY, new int[]{TimeSpan.FULL_DAY.getTimeFrom(), TimeSpan.FULL_DAY.getTimeTo()}, 1);
+    }
+
+    public static TimeSpanGroup emptyGroup(int dayMask) throws IllegalArgumentException {
+        if (dayMask < 0 || dayMask > EVERYDAY)
+            throw new IllegalArgumentException("Incorrect days mask");
+        return new TimeSpanGroup(dayMask);
+    }
+
+    public static TimeSpanGroup emptyEverydayGroup() {
+        return new TimeSpanGroup();
+    }
+
+    public static TimeSpanGroup valueOf(String serialized) throws IllegalArgumentException {
+        TimeSpanParseCache cache = TimeSpanParseCache.getShared();
+        return cache != null ? cache.getGroup(serialized) : parse(serialized);
+    }
+
+    static TimeSpanGroup parse(String serialized) throws IllegalArgumentException {
+        TimeSpanParser parser = new TimeSpanParser();
+        TimeSpanGroup result = parser.parseGroup(serialized, 0, serialized.length());
+        if (result == null)
+            throw parser.toException(serialized);
+        return result;
+    }
+
+    public int minutesTillBecomeAvailable() {
+        return minutesTillBecomeAvailable(WeekMinutes.now());
+    }
+
+    public int minutesTillBecomeAvailable(Calendar cal) {
+        return minutesTillBecomeAvailable(WeekMinutes.fromCalendar(cal));
+    }
+
+    public int minutesTillBecomeAvailable(long epochMillis, int zoneOffsetMillis) {
+        return minutesTillBecomeAvailable(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    public int minutesTillBecomeAvailable(int minuteOfWeek) {
+        int dayOfWeek = WeekMinutes.dayOfWeek(minuteOfWeek) + 1;
+        int myDays = (dayMask | (dayMask << 7)) >> dayOfWeek;
+        int daysCount = -1;
+
+        if (isToday(minuteOfWeek)) { //   
+            if (isActual(minuteOfWeek)) //     ?
+                return 0;
+            else { // ?      .
+                int next = upperBound(WeekMinutes.minuteOfDay(minuteOfWeek));
+                if (next < spans.length) // no any
+                    return spans[next] - WeekMinutes.minuteOfDay(minuteOfWeek);
+            }
+        }
+
+        //     ?     
+        for (int i = 0; i < 7; i++) {
+            if ((myDays & (1 << i)) != 0) {
+                daysCount = (i + 1) * 1440;
+                break;
+            }
+        }
+
+        if (daysCount == -1 || spans.length == 0) {
+            throw new IllegalStateException("Wrong time span state");
+        }
+
+        return daysCount + spans[0] - WeekMinutes.minuteOfDay(minuteOfWeek);
+    }
+
+    /**
+     * @param minuteOfDay minute of day
+     * @return index in spans of the first span starting after the given minute
+     */
+    private int upperBound(int minuteOfDay) {
+        int low = 0, high = spans.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (spans[mid * 2] <= minuteOfDay)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low * 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        writeTo(builder);
+        return builder.toString();
+    }
+
+    public void writeTo(Appendable out) throws IOException {
+        TimeSpan.appendNumber(out, dayMask);
+        out.append(':');
+        for (int i = 0; i < spans.length; i += 2) {
+            if (i > 0)
+                out.append(',');
+            TimeSpan.appendNumber(out, spans[i]);
+            out.append('-');
+            TimeSpan.appendNumber(out, spans[i + 1]);
+        }
+    }
+
+    public void writeTo(StringBuilder out) {
+        out.append(dayMask).append(':');
+        for (int i = 0; i < spans.length; i += 2) {
+            if (i > 0)
+                out.append(',');
+            out.append(spans[i]).append('-').append(spans[i + 1]);
+        }
+    }
+
+    public boolean isToday(Calendar cal) {
+        int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+        return (((1 << (dayOfWeek - 1)) & dayMask) != 0);
+    }
+
+    public boolean isToday(long epochMillis, int zoneOffsetMillis) {
+        return isToday(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    public boolean isToday(int minuteOfWeek) {
+        return (((1 << WeekMinutes.dayOfWeek(minuteOfWeek)) & dayMask) != 0);
+    }
+
+    boolean isActual(Calendar cal) {
+        return isActual(WeekMinutes.fromCalendar(cal));
+    }
+
+    public boolean isActual(long epochMillis, int zoneOffsetMillis) {
+        return isActual(WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    public boolean isActual(int minuteOfWeek) {
+        if (isToday(minuteOfWeek)) {
+            int minuteOfDay = WeekMinutes.minuteOfDay(minuteOfWeek);
+            int candidate = upperBound(minuteOfDay) - 2;
+            return candidate >= 0 && minuteOfDay <= spans[candidate + 1];
+        }
+        return false;
+    }
+
+    int getDayMask() {
+        return dayMask;
+    }
+
+    /**
+     * @return a copy of spans. Use getSpans() to iterate without copying
+     */
+    public TreeSet<TimeSpan> getCollection() {
+        return new TreeSet<TimeSpan>(getSpans());
+    }
+
+    /**
+     * @return read-only sorted view of spans, backed by the group
+     */
+    public List<TimeSpan> getSpans() {
+        return new SpanList();
+    }
+
+    int getSpanCount() {
+        return spans.length / 2;
+    }
+
+    int getSpanFrom(int index) {
+        return spans[index * 2];
+    }
+
+    int getSpanTo(int index) {
+        return spans[index * 2 + 1];
+    }
+
+    /**
+     * @return internal span array, must not be modified
+     */
+    int[] getSpanArray() {
+        return spans;
+    }
+
+    boolean isEmpty() {
+        return dayMask == 0 || spans.length == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TimeSpanGroup that = (TimeSpanGroup) o;
+
+        return dayMask == that.dayMask && Arrays.equals(spans, that.spans);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(spans);
+        result = 31 * result + dayMask;
+        return result;
+    }
+
+    public int compareTo(TimeSpanGroup timeSpanGroup) {
+        if (dayMask != timeSpanGroup.dayMask) {
+            for (int i = 0; i < 7; i++) {
+                int d1 = dayMask & (1 << i);
+                int d2 = timeSpanGroup.dayMask & (1 << i);
+                if (d2 != d1)
+                    return d1 - d2;
+            }
+        }
+
+        int[] his = timeSpanGroup.spans;
+
+        for (int i = 0; i < spans.length; i += 2) {
+            if (i < his.length) {
+                int myStart = spans[i], hisStart = his[i];
+                if (myStart != hisStart)
+                    return hisStart - myStart;
+                else {
+                    int myEnd = spans[i + 1], hisEnd = his[i + 1];
+                    if(myEnd != hisEnd)
+                        return hisEnd - myEnd;
+                }
+            } else
+                return 1;
+        }
+        return his.length > spans.length ? -1 : 0;
+
+    }
+
+    private class SpanList extends AbstractList<TimeSpan> implements RandomAccess {
+
+        @Override
+        public TimeSpan get(int index) {
+            if (index < 0 || index >= getSpanCount())
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + getSpanCount());
+            return new TimeSpan(spans[index * 2], spans[index * 2 + 1]);
+        }
+
+        @Override
+        public int size() {
+            return getSpanCount();
+        }
+    }
+}
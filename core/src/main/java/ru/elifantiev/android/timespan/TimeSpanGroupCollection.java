@@ -0,0 +1,358 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.io.IOException;
+import java.sql.Time;
+import java.util.*;
+
+public class TimeSpanGroupCollection {
+
+    public static String toString(Collection<TimeSpanGroup> groupCollection) {
+        StringBuilder builder = new StringBuilder();
+        writeTo(groupCollection, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Streams the collection in the same format toString produces, e.g. straight into a Writer
+     */
+    public static void writeTo(Collection<TimeSpanGroup> groupCollection, Appendable out) throws IOException {
+        for(TimeSpanGroup group : groupCollection) {
+            group.writeTo(out);
+            out.append('|');
+        }
+    }
+
+    public static void writeTo(Collection<TimeSpanGroup> groupCollection, StringBuilder out) {
+        for(TimeSpanGroup group : groupCollection) {
+            group.writeTo(out);
+            out.append('|');
+        }
+    }
+
+    /**
+     * @param serialized collection spec, as produced by toString
+     * @return unmodifiable collection of parsed groups
+     */
+    public static Collection<TimeSpanGroup> valueOf(String serialized) {
+        if(serialized == null || "".equals(serialized))
+            return Collections.emptySet();
+
+        TimeSpanParseCache cache = TimeSpanParseCache.getShared();
+        return cache != null ? cache.getCollection(serialized) : parse(serialized);
+    }
+
+    static Collection<TimeSpanGroup> parse(String serialized) {
+        ArrayList<TimeSpanGroup> result = new ArrayList<TimeSpanGroup>();
+        TimeSpanParser parser = new TimeSpanParser();
+        if(parser.parseCollection(serialized, result) != TimeSpanParser.OK)
+            throw parser.toException(serialized);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Builds the canonical form of a collection: spans of all groups are merged per day,
+     * then days with equal spans are joined into one group. A span ending at 1439 ends at 1440,
+     * as a clock never reaches 1440. Groups that are never active are dropped unless there is
+     * nothing else. Activation semantics are not changed.
+     * @param groupCollection source collection
+     * @return unmodifiable sorted list of groups
+     */
+    public static List<TimeSpanGroup> normalize(Collection<TimeSpanGroup> groupCollection) {
+        boolean hasActive = false;
+        for (TimeSpanGroup group : groupCollection)
+            hasActive |= !group.isEmpty();
+        if (!hasActive)
+            return Collections.unmodifiableList(new ArrayList<TimeSpanGroup>(new TreeSet<TimeSpanGroup>(groupCollection)));
+
+        return Collections.unmodifiableList(fromDays(toDays(groupCollection)));
+    }
+
+    /**
+     * @return collection active whenever any of the arguments is active
+     */
+    public static List<TimeSpanGroup> union(Collection<TimeSpanGroup> first, Collection<TimeSpanGroup> second) {
+        int[][] a = toAlgebraDays(first), b = toAlgebraDays(second);
+        for (int day = 0; day < 7; day++)
+            a[day] = unionSpans(a[day], b[day]);
+        return toAlgebraResult(a);
+    }
+
+    /**
+     * @return collection active whenever both arguments are active
+     */
+    public static List<TimeSpanGroup> intersect(Collection<TimeSpanGroup> first, Collection<TimeSpanGroup> second) {
+        int[][] a = toAlgebraDays(first), b = toAlgebraDays(second);
+        for (int day = 0; day < 7; day++)
+            a[day] = intersectSpans(a[day], b[day]);
+        return toAlgebraResult(a);
+    }
+
+    /**
+     * @return collection active whenever the first argument is active and the second is not
+     */
+    public static List<TimeSpanGroup> subtract(Collection<TimeSpanGroup> first, Collection<TimeSpanGroup> second) {
+        int[][] a = toAlgebraDays(first), b = toAlgebraDays(second);
+        for (int day = 0; day < 7; day++)
+            a[day] = intersectSpans(a[day], complementSpans(b[day]));
+        return toAlgebraResult(a);
+    }
+
+    /**
+     * @return collection active whenever the argument is not active
+     */
+    public static List<TimeSpanGroup> complement(Collection<TimeSpanGroup> groupCollection) {
+        int[][] a = toAlgebraDays(groupCollection);
+        for (int day = 0; day < 7; day++)
+            a[day] = complementSpans(a[day]);
+        return toAlgebraResult(a);
+    }
+
+    // Empty collection means "anytime" everywhere else, so it is the full week here too
+    private static int[][] toAlgebraDays(Collection<TimeSpanGroup> groupCollection) {
+        if (groupCollection.size() == 0) {
+            int[][] days = new int[7][];
+            for (int day = 0; day < 7; day++)
+                days[day] = new int[]{0, WeekMinutes.MINUTES_IN_DAY};
+            return days;
+        }
+        return toDays(groupCollection);
+    }
+
+    // Result that is never active can not be an empty collection, it becomes a group without days and spans
+    private static List<TimeSpanGroup> toAlgebraResult(int[][] days) {
+        List<TimeSpanGroup> result = fromDays(days);
+        if (result.size() == 0)
+            result.add(TimeSpanGroup.emptyGroup(0));
+        return Collections.unmodifiableList(result);
+    }
+
+    private static int[] unionSpans(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int size = 0, i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            int from, to;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                from = a[i];
+                to = a[i + 1];
+                i += 2;
+            } else {
+                from = b[j];
+                to = b[j + 1];
+                j += 2;
+            }
+            if (size > 0 && from <= result[size - 1] + 1) {
+                if (to > result[size - 1])
+                    result[size - 1] = to;
+            } else {
+                result[size++] = from;
+                result[size++] = to;
+            }
+        }
+        return trim(result, size);
+    }
+
+    private static int[] intersectSpans(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int size = 0, i = 0, j = 0;
+        while (i < a.length && j < b.length) {
+            int from = Math.max(a[i], b[j]);
+            int to = Math.min(a[i + 1], b[j + 1]);
+            if (from <= to) {
+                result[size++] = from;
+                result[size++] = to;
+            }
+            if (a[i + 1] < b[j + 1])
+                i += 2;
+            else
+                j += 2;
+        }
+        return trim(result, size);
+    }
+
+    private static int[] complementSpans(int[] a) {
+        int[] result = new int[a.length + 2];
+        int size = 0, start = 0;
+        for (int i = 0; i < a.length; i += 2) {
+            if (a[i] > start) {
+                result[size++] = start;
+                result[size++] = a[i] - 1;
+            }
+            start = a[i + 1] + 1;
+        }
+        // minute 1440 is never reached by a clock, do not produce a span of it alone
+        if (start < WeekMinutes.MINUTES_IN_DAY) {
+            result[size++] = start;
+            result[size++] = WeekMinutes.MINUTES_IN_DAY;
+        }
+        return trim(result, size);
+    }
+
+    private static int[] trim(int[] spans, int size) {
+        if (size == spans.length)
+            return spans;
+        int[] result = new int[size];
+        System.arraycopy(spans, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * @param groupCollection source collection
+     * @return merged span arrays for each day of week, Sunday first, a last span ending at 1439 ends at 1440
+     */
+    static int[][] toDays(Collection<TimeSpanGroup> groupCollection) {
+        int[][] days = new int[7][];
+        int[] pairs = new int[16];
+        for (int day = 0; day < 7; day++) {
+            int count = 0;
+            for (TimeSpanGroup group : groupCollection) {
+                if ((group.getDayMask() & (1 << day)) == 0)
+                    continue;
+                int[] spans = group.getSpanArray();
+                if (count * 2 + spans.length > pairs.length) {
+                    int[] grown = new int[Math.max(pairs.length * 2, count * 2 + spans.length)];
+                    System.arraycopy(pairs, 0, grown, 0, count * 2);
+                    pairs = grown;
+                }
+                System.arraycopy(spans, 0, pairs, count * 2, spans.length);
+                count += spans.length / 2;
+            }
+            int[] spans = new TimeSpanGroup(1 << day, pairs, count).getSpanArray();
+            // 0-1439 and 0-1440 are active at the same minutes, they must compare equal
+            if (spans.length > 0 && spans[spans.length - 1] == WeekMinutes.MINUTES_IN_DAY - 1)
+                spans[spans.length - 1] = WeekMinutes.MINUTES_IN_DAY;
+            days[day] = spans;
+        }
+        return days;
+    }
+
+    /**
+     * @param days merged span arrays for each day of week, Sunday first
+     * @return sorted groups, one per distinct non-empty span array
+     */
+    static List<TimeSpanGroup> fromDays(int[][] days) {
+        TreeSet<TimeSpanGroup> result = new TreeSet<TimeSpanGroup>();
+        int done = 0;
+        for (int day = 0; day < 7; day++) {
+            if ((done & (1 << day)) != 0 || days[day].length == 0)
+                continue;
+            int dayMask = 0;
+            for (int other = day; other < 7; other++) {
+                if (Arrays.equals(days[day], days[other]))
+                    dayMask |= 1 << other;
+            }
+            done |= dayMask;
+            result.add(new TimeSpanGroup(dayMask, days[day], days[day].length / 2));
+        }
+        return new ArrayList<TimeSpanGroup>(result);
+    }
+
+    /**
+     *      ,     
+     * @param groupCollection 
+     * @return     .
+     *  0      
+     */
+    public static int getMinutesTillBecomeActive(Collection<TimeSpanGroup> groupCollection) {
+        return getMinutesTillBecomeActive(groupCollection, WeekMinutes.now());
+    }
+
+    public static int getMinutesTillBecomeActive(Collection<TimeSpanGroup> groupCollection, long epochMillis, int zoneOffsetMillis) {
+        return getMinutesTillBecomeActive(groupCollection, WeekMinutes.fromEpochMillis(epochMillis, zoneOffsetMillis));
+    }
+
+    public static int getMinutesTillBecomeActive(Collection<TimeSpanGroup> groupCollection, int minuteOfWeek) {
+        if(groupCollection.size() == 0)
+            return 0;
+
+        int minWait = Integer.MAX_VALUE;
+        for(TimeSpanGroup group : groupCollection) {
+            int thisWait = group.minutesTillBecomeAvailable(minuteOfWeek);
+            if(thisWait < minWait)
+                minWait = thisWait;
+        }
+        return minWait;
+    }
+
+    public static int getMinutesTillBecomeActive(CompiledSchedule schedule) {
+        return schedule.minutesTillActive(WeekMinutes.now());
+    }
+
+    /**
+     * @deprecated use minutesTillRangeEnd(CompiledSchedule)
+     */
+    @Deprecated
+    public static int tillMaxContinuousRangeEnd(Set<TimeSpanGroup> groupCollection) {
+        return tillMaxContinuousRangeEnd(groupCollection, WeekMinutes.now());
+    }
+
+    /**
+     * Minutes till the end of today's active span. Only spans of today are looked at, so a range
+     * is not continued past midnight.
+     * @param groupCollection group collection
+     * @param minuteOfWeek current minute of week
+     * @return minutes till the last minute of the span, -1 if the collection is not active now
+     * @deprecated use minutesTillRangeEnd(CompiledSchedule, int), which follows the range across
+     * midnight and counts till the first inactive minute, one more than this method for a range
+     * ending today
+     */
+    @Deprecated
+    public static int tillMaxContinuousRangeEnd(Set<TimeSpanGroup> groupCollection, int minuteOfWeek) {
+        int left = 0, right = -1;
+        int mNow = WeekMinutes.minuteOfDay(minuteOfWeek);
+        for(TimeSpanGroup group : groupCollection) {
+            if(group.isToday(minuteOfWeek)) {
+                for(int i = 0; i < group.getSpanCount(); i++) {
+                    int sLeft = group.getSpanFrom(i);
+                    int sRight = group.getSpanTo(i);
+                    if(sLeft <= mNow && mNow <= sRight) {
+                        if(right == -1) { // first active span ever
+                            left = sLeft;
+                            right = sRight;
+                        } else {
+                            if((left <= sLeft && sLeft <= right) || (sLeft <= left && left <= sRight))
+                                right = sRight;
+                        }
+                    }
+                }
+            }
+        }
+        return right > 0 ? right - mNow : right;
+    }
+
+    public static int minutesTillRangeEnd(CompiledSchedule schedule) {
+        return minutesTillRangeEnd(schedule, WeekMinutes.now());
+    }
+
+    /**
+     * Minutes till the schedule stops being active, in logarithmic time. Spans are joined across
+     * groups, across midnight and across the end of the week, so 1:1000-1440 with 2:0-120 is one
+     * continuous range.
+     * @param schedule compiled schedule
+     * @param minuteOfWeek current minute of week
+     * @return minutes till the first minute the schedule is not active, -1 if it is not active now,
+     * Integer.MAX_VALUE if it never stops being active
+     */
+    public static int minutesTillRangeEnd(CompiledSchedule schedule, int minuteOfWeek) {
+        if(!schedule.isActive(minuteOfWeek))
+            return -1;
+        return schedule.minutesTillInactive(minuteOfWeek);
+    }
+
+}
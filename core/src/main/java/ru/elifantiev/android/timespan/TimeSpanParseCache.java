@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.*;
+
+/**
+ * Bounded LRU cache from spec string to parsed, immutable result.
+ * Caching is opt-in: install a cache with setShared() and TimeSpanGroup.valueOf and
+ * TimeSpanGroupCollection.valueOf start to consult it.
+ */
+public final class TimeSpanParseCache {
+
+    private static volatile TimeSpanParseCache shared;
+
+    private final LruMap<String, TimeSpanGroup> groups;
+    private final LruMap<String, Collection<TimeSpanGroup>> collections;
+    private long hits, misses;
+
+    /**
+     * @param maxSize maximum number of cached groups and, separately, of cached collections
+     */
+    public TimeSpanParseCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Cache size must be positive");
+        groups = new LruMap<String, TimeSpanGroup>(maxSize);
+        collections = new LruMap<String, Collection<TimeSpanGroup>>(maxSize);
+    }
+
+    /**
+     * @param cache cache used by valueOf methods, null to disable caching
+     */
+    public static void setShared(TimeSpanParseCache cache) {
+        shared = cache;
+    }
+
+    public static TimeSpanParseCache getShared() {
+        return shared;
+    }
+
+    public TimeSpanGroup getGroup(String spec) throws IllegalArgumentException {
+        synchronized (this) {
+            TimeSpanGroup cached = groups.get(spec);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        TimeSpanGroup parsed = TimeSpanGroup.parse(spec);
+        synchronized (this) {
+            groups.put(spec, parsed);
+        }
+        return parsed;
+    }
+
+    public Collection<TimeSpanGroup> getCollection(String spec) throws IllegalArgumentException {
+        synchronized (this) {
+            Collection<TimeSpanGroup> cached = collections.get(spec);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        Collection<TimeSpanGroup> parsed = TimeSpanGroupCollection.parse(spec);
+        synchronized (this) {
+            collections.put(spec, parsed);
+        }
+        return parsed;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return groups.evictions + collections.evictions;
+    }
+
+    public synchronized int size() {
+        return groups.size() + collections.size();
+    }
+
+    public synchronized void clear() {
+        groups.clear();
+        collections.clear();
+    }
+
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+        // Guarded by the owning cache
+        long evictions;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > maxSize) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.Collection;
+
+/**
+ * Single-pass parser for the "dayMask:from-to,from-to|dayMask:from-to|" format.
+ * Does not create intermediate strings and does not throw on malformed input,
+ * errors are reported through getErrorCode() and getErrorPosition().
+ * Instances keep a scratch buffer and are not thread-safe, reuse one per thread.
+ */
+public final class TimeSpanParser {
+
+    public static final int OK = 0;
+    public static final int ERROR_NO_DAY_SEPARATOR = 1;
+    public static final int ERROR_INVALID_NUMBER = 2;
+    public static final int ERROR_INVALID_DAY_MASK = 3;
+    public static final int ERROR_NO_TIME_SEPARATOR = 4;
+    public static final int ERROR_REVERSED_RANGE = 5;
+    public static final int ERROR_SPAN_OUT_OF_DAY = 6;
+
+    private int[] pairs = new int[16];
+    private int pairCount;
+    private int errorCode = OK;
+    private int errorPosition = -1;
+
+    // result of the last parseNumber call
+    private int number;
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * @return index in the source sequence where parsing failed, -1 if last call succeeded
+     */
+    public int getErrorPosition() {
+        return errorPosition;
+    }
+
+    public int parseCollection(CharSequence source, Collection<TimeSpanGroup> result) {
+        return parseCollection(source, 0, source == null ? 0 : source.length(), result);
+    }
+
+    /**
+     * Parses groups separated by '|', empty groups are skipped.
+     * @param source source sequence
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @param result parsed groups are appended here. Groups preceding a malformed one are kept
+     * @return OK or error code
+     */
+    public int parseCollection(CharSequence source, int start, int end, Collection<TimeSpanGroup> result) {
+        reset();
+        int groupStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || source.charAt(i) == '|') {
+                if (i > groupStart) {
+                    TimeSpanGroup group = parseGroup(source, groupStart, i);
+                    if (group == null)
+                        return errorCode;
+                    result.add(group);
+                }
+                groupStart = i + 1;
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * @param source source sequence
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return parsed group or null if source is malformed
+     */
+    public TimeSpanGroup parseGroup(CharSequence source, int start, int end) {
+        reset();
+        int daySeparator = indexOf(source, ':', start, end);
+        if (daySeparator == -1)
+            return fail(ERROR_NO_DAY_SEPARATOR, end);
+
+        if (!parseNumber(source, start, daySeparator))
+            return null;
+        if (number < 0 || number > TimeSpanGroup.EVERYDAY)
+            return fail(ERROR_INVALID_DAY_MASK, start);
+        int dayMask = number;
+
+        // Trailing empty spans are allowed, as String.split(",") drops them.
+        // No spans at all is a group that is never active, as written by toString()
+        int spansEnd = end;
+        while (spansEnd > daySeparator + 1 && source.charAt(spansEnd - 1) == ',')
+            spansEnd--;
+
+        pairCount = 0;
+        if (spansEnd > daySeparator + 1) {
+            int spanStart = daySeparator + 1;
+            for (int i = spanStart; i <= spansEnd; i++) {
+                if (i == spansEnd || source.charAt(i) == ',') {
+                    if (!parseSpanInternal(source, spanStart, i))
+                        return null;
+                    spanStart = i + 1;
+                }
+            }
+        }
+
+        return new TimeSpanGroup(dayMask, pairs, pairCount);
+    }
+
+    /**
+     * @param source source sequence
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return parsed span or null if source is malformed
+     */
+    public TimeSpan parseSpan(CharSequence source, int start, int end) {
+        reset();
+        pairCount = 0;
+        if (!parseSpanInternal(source, start, end))
+            return null;
+        return new TimeSpan(pairs[0], pairs[1]);
+    }
+
+    private boolean parseSpanInternal(CharSequence source, int start, int end) {
+        int timeSeparator = indexOf(source, '-', start, end);
+        if (timeSeparator == -1) {
+            fail(ERROR_NO_TIME_SEPARATOR, start);
+            return false;
+        }
+
+        if (!parseNumber(source, start, timeSeparator))
+            return false;
+        int timeFrom = number;
+        if (!parseNumber(source, timeSeparator + 1, end))
+            return false;
+        int timeTo = number;
+
+        if (timeFrom > timeTo) {
+            fail(ERROR_REVERSED_RANGE, start);
+            return false;
+        }
+        // Would be reversed after clamping, e.g. 1500-1600
+        if (timeFrom > TimeSpan.FULL_DAY.getTimeTo() || timeTo < 0) {
+            fail(ERROR_SPAN_OUT_OF_DAY, start);
+            return false;
+        }
+
+        if (pairCount * 2 == pairs.length) {
+            int[] grown = new int[pairs.length * 2];
+            System.arraycopy(pairs, 0, grown, 0, pairs.length);
+            pairs = grown;
+        }
+        // Same clamping as TimeSpan constructor does
+        pairs[pairCount * 2] = Math.max(0, timeFrom);
+        pairs[pairCount * 2 + 1] = Math.min(TimeSpan.FULL_DAY.getTimeTo(), timeTo);
+        pairCount++;
+        return true;
+    }
+
+    /**
+     * Parses a decimal integer with optional sign, the way Integer.parseInt does
+     */
+    private boolean parseNumber(CharSequence source, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end) {
+            char sign = source.charAt(i);
+            if (sign == '-' || sign == '+') {
+                negative = sign == '-';
+                i++;
+            }
+        }
+        if (i == end) {
+            fail(ERROR_INVALID_NUMBER, i);
+            return false;
+        }
+
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = source.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                fail(ERROR_INVALID_NUMBER, i);
+                return false;
+            }
+            result = result * 10 + digit;
+            if (result > limit) {
+                fail(ERROR_INVALID_NUMBER, i);
+                return false;
+            }
+        }
+        number = (int) (negative ? -result : result);
+        return true;
+    }
+
+    IllegalArgumentException toException(CharSequence source) {
+        return new IllegalArgumentException(
+                "Trying to parse from wrong format: " + source + " (error " + errorCode + " at " + errorPosition + ")");
+    }
+
+    private static int indexOf(CharSequence source, char what, int start, int end) {
+        for (int i = start; i < end; i++)
+            if (source.charAt(i) == what)
+                return i;
+        return -1;
+    }
+
+    private void reset() {
+        errorCode = OK;
+        errorPosition = -1;
+    }
+
+    private TimeSpanGroup fail(int code, int position) {
+        errorCode = code;
+        errorPosition = position;
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_WEEK;
+
+/**
+ * Cursor over activation/deactivation instants of a CompiledSchedule, see CompiledSchedule.transitions.
+ * Does not allocate while iterating.
+ * <pre>
+ * TransitionIterator i = schedule.transitions(now, now + year, offset);
+ * while (i.next())
+ *     plan(i.getTime(), i.isActivation());
+ * </pre>
+ */
+public final class TransitionIterator {
+
+    private final CompiledSchedule schedule;
+    private final long horizonMillis;
+    private final int zoneOffsetMillis;
+
+    private long weekStartMinute;
+    private int index;
+    private long time;
+    private boolean activation;
+
+    TransitionIterator(CompiledSchedule schedule, long startMillis, long horizonMillis, int zoneOffsetMillis) {
+        this.schedule = schedule;
+        this.horizonMillis = horizonMillis;
+        this.zoneOffsetMillis = zoneOffsetMillis;
+
+        long localMinute = WeekMinutes.localMinute(startMillis, zoneOffsetMillis);
+        int minuteOfWeek = WeekMinutes.fromLocalMinute(localMinute);
+        weekStartMinute = localMinute - minuteOfWeek;
+        index = schedule.nextTransitionIndex(minuteOfWeek);
+    }
+
+    /**
+     * Moves to the next transition
+     * @return false if there are no more transitions before the horizon
+     */
+    public boolean next() {
+        int count = schedule.getTransitionCount();
+        if (count == 0)
+            return false;
+        if (index == count) {
+            index = 0;
+            weekStartMinute += MINUTES_IN_WEEK;
+        }
+        int minuteOfWeek = schedule.getTransition(index);
+        long candidate = WeekMinutes.toEpochMillis(weekStartMinute + minuteOfWeek, zoneOffsetMillis);
+        if (candidate > horizonMillis)
+            return false;
+        time = candidate;
+        activation = schedule.isActive(minuteOfWeek);
+        index++;
+        return true;
+    }
+
+    /**
+     * @return instant of the current transition, epoch millis
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return true if schedule becomes active at the current transition, false if it stops being active
+     */
+    public boolean isActivation() {
+        return activation;
+    }
+}
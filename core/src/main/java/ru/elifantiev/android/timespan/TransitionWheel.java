@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_WEEK;
+
+/**
+ * Timing wheel with one slot per minute of the week. Every registered schedule sits in the slot
+ * of its next transition, so a tick only touches schedules which change state in the elapsed minutes.
+ * A schedule always has its next transition less than a week ahead, so slots need no round counters.
+ * <p>
+ * Call tick() at least once a minute, e.g. from a Handler or a scheduled executor. Listeners are
+ * called from tick(), they may register and unregister schedules.
+ * Zone offset is fixed for the wheel lifetime. Not thread-safe, use from a single thread.
+ */
+public final class TransitionWheel {
+
+    private final Clock clock;
+    private final int zoneOffsetMillis;
+    private final Entry[] slots = new Entry[MINUTES_IN_WEEK];
+    private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+    // Last processed local minute since epoch
+    private long currentMinute;
+
+    public interface Listener {
+        /**
+         * @param id schedule id
+         * @param active true if schedule became active, false if it stopped being active
+         * @param timeMillis transition instant
+         */
+        public void onTransition(int id, boolean active, long timeMillis);
+    }
+
+    public TransitionWheel(Clock clock, int zoneOffsetMillis) {
+        this.clock = clock;
+        this.zoneOffsetMillis = zoneOffsetMillis;
+        this.currentMinute = WeekMinutes.localMinute(clock.currentTimeMillis(), zoneOffsetMillis);
+    }
+
+    public void register(int id, Collection<TimeSpanGroup> groups, Listener listener) {
+        register(id, CompiledSchedule.fromGroupCollection(groups), listener);
+    }
+
+    /**
+     * Registers schedule, replacing the one registered with the same id.
+     * Transitions after the last processed minute will be reported
+     */
+    public void register(int id, CompiledSchedule schedule, Listener listener) {
+        unregister(id);
+        Entry entry = new Entry(id, schedule, listener);
+        entries.put(id, entry);
+        schedule(entry, WeekMinutes.fromLocalMinute(currentMinute));
+    }
+
+    /**
+     * @return true if schedule was registered
+     */
+    public boolean unregister(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null)
+            return false;
+        unlink(entry);
+        return true;
+    }
+
+    public boolean isRegistered(int id) {
+        return entries.containsKey(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Fires transitions for all minutes elapsed since the previous tick.
+     * If more than a week elapsed, only transitions of the last week are fired.
+     * @return number of fired transitions
+     */
+    public int tick() {
+        long now = WeekMinutes.localMinute(clock.currentTimeMillis(), zoneOffsetMillis);
+        if (now - currentMinute > MINUTES_IN_WEEK) {
+            currentMinute = now - MINUTES_IN_WEEK;
+            // Entries still wait in slots of the skipped transitions
+            int minuteOfWeek = WeekMinutes.fromLocalMinute(currentMinute);
+            for (Entry entry : entries.values()) {
+                unlink(entry);
+                schedule(entry, minuteOfWeek);
+            }
+        }
+        int fired = 0;
+        while (currentMinute < now) {
+            currentMinute++;
+            int slot = WeekMinutes.fromLocalMinute(currentMinute);
+            long timeMillis = WeekMinutes.toEpochMillis(currentMinute, zoneOffsetMillis);
+            // Rescheduled entries never land in the same slot, as the next transition
+            // is strictly after this minute, so the loop ends even if listeners
+            // register or unregister schedules
+            Entry entry;
+            while ((entry = slots[slot]) != null) {
+                unlink(entry);
+                schedule(entry, slot);
+                entry.listener.onTransition(entry.id, entry.schedule.isActive(slot), timeMillis);
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Puts entry into the slot of its first transition after the minute
+     */
+    private void schedule(Entry entry, int minuteOfWeek) {
+        CompiledSchedule schedule = entry.schedule;
+        int count = schedule.getTransitionCount();
+        if (count == 0)
+            return;
+        int index = schedule.nextTransitionIndex(minuteOfWeek);
+        int slot = schedule.getTransition(index == count ? 0 : index);
+        entry.slot = slot;
+        entry.next = slots[slot];
+        if (entry.next != null)
+            entry.next.prev = entry;
+        slots[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.slot == -1)
+            return;
+        if (entry.prev != null)
+            entry.prev.next = entry.next;
+        else
+            slots[entry.slot] = entry.next;
+        if (entry.next != null)
+            entry.next.prev = entry.prev;
+        entry.prev = entry.next = null;
+        entry.slot = -1;
+    }
+
+    private static final class Entry {
+        final int id;
+        final CompiledSchedule schedule;
+        final Listener listener;
+        int slot = -1;
+        Entry prev, next;
+
+        Entry(int id, CompiledSchedule schedule, Listener listener) {
+            this.id = id;
+            this.schedule = schedule;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Minute-of-week arithmetic. Week starts on Sunday 00:00 (minute 0), which matches
+ * bit 0 of the TimeSpanGroup day mask.
+ */
+public final class WeekMinutes {
+
+    public static final int MINUTES_IN_DAY = 1440;
+    public static final int DAYS_IN_WEEK = 7;
+    public static final int MINUTES_IN_WEEK = MINUTES_IN_DAY * DAYS_IN_WEEK;
+
+    private static final long MILLIS_IN_MINUTE = 60 * 1000L;
+    // 1970-01-01 is Thursday
+    private static final int EPOCH_DAY_OF_WEEK = 4;
+    private static final int EPOCH_MINUTE_OF_WEEK = EPOCH_DAY_OF_WEEK * MINUTES_IN_DAY;
+
+    private WeekMinutes() {
+    }
+
+    public static int fromCalendar(Calendar cal) {
+        return (cal.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY) * MINUTES_IN_DAY + TimeSpan.getCurrentMinutes(cal);
+    }
+
+    /**
+     * Converts an instant to the minute of week without touching Calendar
+     * @param epochMillis instant, milliseconds since epoch
+     * @param zoneOffsetMillis zone offset at that instant, see TimeZone.getOffset(long)
+     * @return minute of week
+     */
+    public static int fromEpochMillis(long epochMillis, int zoneOffsetMillis) {
+        return fromLocalMinute(localMinute(epochMillis, zoneOffsetMillis));
+    }
+
+    /**
+     * @param epochMillis instant, milliseconds since epoch
+     * @param zoneOffsetMillis zone offset at that instant
+     * @return local minutes since 1970-01-01 00:00, rounded down
+     */
+    public static long localMinute(long epochMillis, int zoneOffsetMillis) {
+        long local = epochMillis + zoneOffsetMillis;
+        long minute = local / MILLIS_IN_MINUTE;
+        if (local % MILLIS_IN_MINUTE < 0)
+            minute--;
+        return minute;
+    }
+
+    /**
+     * @param localMinute local minutes since 1970-01-01 00:00
+     * @return minute of week
+     */
+    public static int fromLocalMinute(long localMinute) {
+        int result = (int) ((localMinute + EPOCH_MINUTE_OF_WEEK) % MINUTES_IN_WEEK);
+        return result < 0 ? result + MINUTES_IN_WEEK : result;
+    }
+
+    /**
+     * @param localMinute local minutes since 1970-01-01 00:00
+     * @param zoneOffsetMillis zone offset
+     * @return instant the local minute starts at, milliseconds since epoch
+     */
+    public static long toEpochMillis(long localMinute, int zoneOffsetMillis) {
+        return localMinute * MILLIS_IN_MINUTE - zoneOffsetMillis;
+    }
+
+    public static int now() {
+        long now = System.currentTimeMillis();
+        return fromEpochMillis(now, TimeZone.getDefault().getOffset(now));
+    }
+
+    public static int dayOfWeek(int minuteOfWeek) {
+        return minuteOfWeek / MINUTES_IN_DAY;
+    }
+
+    public static int minuteOfDay(int minuteOfWeek) {
+        return minuteOfWeek % MINUTES_IN_DAY;
+    }
+}
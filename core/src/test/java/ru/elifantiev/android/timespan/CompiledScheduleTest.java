@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.elifantiev.android.timespan.ManualClock.SUNDAY;
+
+public class CompiledScheduleTest {
+
+    @Test
+    public void agreesWithIntervalEngine() {
+        String[] schedules = {
+                "62:540-1079|65:0-59,600-719|",
+                "64:1380-1439|1:0-59|",
+                "2:1440-1440|",
+                "4:0-1439|8:1439-1440|",
+                "127:0-1440|",
+                "1:0-0|"
+        };
+        for (String serialized : schedules) {
+            Collection<TimeSpanGroup> groups = TimeSpanGroupCollection.valueOf(serialized);
+            CompiledSchedule schedule = CompiledSchedule.fromGroupCollection(groups);
+            for (int minute = 0; minute < WeekMinutes.MINUTES_IN_WEEK; minute++) {
+                String where = serialized + " at " + minute;
+                boolean active = false;
+                for (TimeSpanGroup group : groups)
+                    active |= group.isActual(minute);
+                assertEquals(where, active, schedule.isActive(minute));
+                assertEquals(where, TimeSpanGroupCollection.getMinutesTillBecomeActive(groups, minute),
+                        schedule.minutesTillActive(minute));
+            }
+        }
+    }
+
+    @Test
+    public void phantomMinuteStartsNextDay() {
+        CompiledSchedule schedule = CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("2:1440-1440|"));
+        assertFalse(schedule.isActive(2 * 1440));
+        assertEquals(2880, schedule.minutesTillActive(0));
+        assertEquals(1, schedule.minutesTillActive(2879));
+    }
+
+    @Test
+    public void unschedulableThrowsEvenWhenActive() {
+        Collection<TimeSpanGroup> groups = TimeSpanGroupCollection.valueOf("127:0-1440|0:|");
+        CompiledSchedule schedule = CompiledSchedule.fromGroupCollection(groups);
+        assertTrue(schedule.isActive(0));
+        assertEquals(-1, schedule.minutesTillActiveOrNone(0));
+        try {
+            TimeSpanGroupCollection.getMinutesTillBecomeActive(groups, 0);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            schedule.minutesTillActive(0);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void instantOverloadsUseZoneOffset() {
+        CompiledSchedule schedule = CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("2:60-119|"));
+        int offset = 3 * 60 * 60 * 1000;
+        // Monday 01:30 at UTC+3
+        long instant = SUNDAY + (1440 + 90 - 180) * 60 * 1000L;
+        assertTrue(schedule.isActive(instant, offset));
+        assertFalse(schedule.isActive(instant, 0));
+        assertEquals(30, schedule.minutesTillInactive(instant, offset));
+    }
+
+    @Test
+    public void equalSchedulesCompileEqual() {
+        CompiledSchedule first = CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("2:0-10|4:0-10|"));
+        CompiledSchedule second = CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("6:0-10|"));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertFalse(first.equals(CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("6:0-10|0:|"))));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+/**
+ * Clock which only moves when told to
+ */
+final class ManualClock implements Clock {
+
+    // 1970-01-04 00:00 UTC, minute 0 of the week
+    static final long SUNDAY = 3L * 24 * 60 * 60 * 1000;
+    static final long MINUTE = 60 * 1000;
+
+    private long now;
+
+    ManualClock(long now) {
+        this.now = now;
+    }
+
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    void set(long now) {
+        this.now = now;
+    }
+
+    void advanceMinutes(long minutes) {
+        now += minutes * MINUTE;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.elifantiev.android.timespan.ManualClock.MINUTE;
+import static ru.elifantiev.android.timespan.ManualClock.SUNDAY;
+
+public class MemoizedScheduleTest {
+
+    private ManualClock clock;
+    private MemoizedSchedule schedule;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(SUNDAY);
+        // Monday 01:00-01:59
+        schedule = new MemoizedSchedule(TimeSpanGroupCollection.valueOf("2:60-119|"), clock, 0);
+    }
+
+    @Test
+    public void followsClockWithinCachedState() {
+        assertFalse(schedule.isActive());
+        assertEquals(1500, schedule.minutesTillActive());
+        assertEquals(0, schedule.minutesTillInactive());
+        assertEquals(SUNDAY + 1500 * MINUTE, schedule.getNextChangeMillis());
+
+        clock.advanceMinutes(1499);
+        assertFalse(schedule.isActive());
+        assertEquals(1, schedule.minutesTillActive());
+
+        // Last millisecond before the change
+        clock.set(SUNDAY + 1500 * MINUTE - 1);
+        assertFalse(schedule.isActive());
+        assertEquals(1, schedule.minutesTillActive());
+    }
+
+    @Test
+    public void invalidatesWhenStateChanges() {
+        assertFalse(schedule.isActive());
+
+        clock.set(SUNDAY + 1500 * MINUTE);
+        assertTrue(schedule.isActive());
+        assertEquals(0, schedule.minutesTillActive());
+        assertEquals(60, schedule.minutesTillInactive());
+        assertEquals(SUNDAY + 1560 * MINUTE, schedule.getNextChangeMillis());
+
+        clock.advanceMinutes(60);
+        assertFalse(schedule.isActive());
+        assertEquals(WeekMinutes.MINUTES_IN_WEEK - 60, schedule.minutesTillActive());
+        assertEquals(SUNDAY + (WeekMinutes.MINUTES_IN_WEEK + 1500) * MINUTE, schedule.getNextChangeMillis());
+    }
+
+    @Test
+    public void invalidatesWhenClockGoesBack() {
+        clock.set(SUNDAY + 1530 * MINUTE);
+        assertTrue(schedule.isActive());
+
+        clock.set(SUNDAY + 1499 * MINUTE);
+        assertFalse(schedule.isActive());
+        assertEquals(1, schedule.minutesTillActive());
+    }
+
+    @Test
+    public void sameAnswerWeeksLater() {
+        clock.advanceMinutes(3 * WeekMinutes.MINUTES_IN_WEEK + 1000);
+        assertFalse(schedule.isActive());
+        assertEquals(500, schedule.minutesTillActive());
+    }
+
+    @Test
+    public void alwaysActiveNeverChanges() {
+        MemoizedSchedule anytime = new MemoizedSchedule(Collections.<TimeSpanGroup>emptyList(), clock, 0);
+        assertTrue(anytime.isActive());
+        assertEquals(0, anytime.minutesTillActive());
+        assertEquals(Integer.MAX_VALUE, anytime.minutesTillInactive());
+        assertEquals(Long.MAX_VALUE, anytime.getNextChangeMillis());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void neverActiveThrows() {
+        MemoizedSchedule never = new MemoizedSchedule(TimeSpanGroupCollection.valueOf("0:"), clock, 0);
+        assertFalse(never.isActive());
+        assertEquals(Long.MAX_VALUE, never.getNextChangeMillis());
+        never.minutesTillActive();
+    }
+
+    @Test
+    public void countsPhantomStartLikeCompiledSchedule() {
+        // Sunday 1440-1440 is a start at Monday 00:00, though nothing becomes active then
+        MemoizedSchedule memoized = new MemoizedSchedule(TimeSpanGroupCollection.valueOf("2:100-200|1:1440-1440|"), clock, 0);
+        assertEquals(1440, memoized.minutesTillActive());
+        clock.advanceMinutes(1439);
+        assertEquals(1, memoized.minutesTillActive());
+        clock.advanceMinutes(2);
+        assertFalse(memoized.isActive());
+        assertEquals(99, memoized.minutesTillActive());
+        assertEquals(memoized.getSchedule().minutesTillActive(1441), memoized.minutesTillActive());
+    }
+
+    @Test
+    public void waitsForPhantomStartOnly() {
+        MemoizedSchedule memoized = new MemoizedSchedule(TimeSpanGroupCollection.valueOf("1:1440-1440|"), clock, 0);
+        assertFalse(memoized.isActive());
+        assertEquals(Long.MAX_VALUE, memoized.getNextChangeMillis());
+        assertEquals(1440, memoized.minutesTillActive());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void groupWithoutDaysThrowsEvenWhenActive() {
+        MemoizedSchedule memoized = new MemoizedSchedule(TimeSpanGroupCollection.valueOf("1:0-100|0:|"), clock, 0);
+        assertTrue(memoized.isActive());
+        memoized.minutesTillActive();
+    }
+
+    @Test
+    public void agreesWithReferencesEveryMinute() {
+        String[] schedules = {"2:100-200|1:1440-1440|", "1:1440-1440|", "64:1380-1439|1:0-59|", "62:540-1079|"};
+        for (String serialized : schedules) {
+            Collection<TimeSpanGroup> groups = TimeSpanGroupCollection.valueOf(serialized);
+            clock.set(SUNDAY);
+            MemoizedSchedule memoized = new MemoizedSchedule(groups, clock, 0);
+            for (int minute = 0; minute < WeekMinutes.MINUTES_IN_WEEK; minute++, clock.advanceMinutes(1))
+                assertEquals(serialized + " at " + minute,
+                        TimeSpanGroupCollection.getMinutesTillBecomeActive(groups, minute), memoized.minutesTillActive());
+        }
+    }
+
+    @Test
+    public void usesZoneOffset() {
+        // Sunday 23:00 at UTC+2 is Sunday 21:00 UTC
+        clock.set(SUNDAY + 21 * 60 * MINUTE);
+        MemoizedSchedule shifted = new MemoizedSchedule(schedule.getSchedule(), clock, 2 * 60 * 60 * 1000);
+        assertFalse(shifted.isActive());
+        assertEquals(120, shifted.minutesTillActive());
+        assertEquals(SUNDAY + 23 * 60 * MINUTE, shifted.getNextChangeMillis());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ScheduleFileTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void evaluatesLikeGroups() throws IOException {
+        String[] serialized = {"62:540-1079|65:0-59,600-719|", "2:1440-1440|", "", "127:0-1440|"};
+        List<Collection<TimeSpanGroup>> schedules = new ArrayList<Collection<TimeSpanGroup>>();
+        for (String s : serialized)
+            schedules.add(TimeSpanGroupCollection.valueOf(s));
+        File file = folder.newFile();
+        ScheduleFile.write(schedules, file);
+
+        ScheduleFile schedulesFile = ScheduleFile.open(file);
+        assertEquals(schedules.size(), schedulesFile.size());
+        for (int id = 0; id < schedules.size(); id++) {
+            Collection<TimeSpanGroup> groups = schedules.get(id);
+            assertEquals(new ArrayList<TimeSpanGroup>(groups), schedulesFile.get(id));
+            CompiledSchedule compiled = CompiledSchedule.fromGroupCollection(groups);
+            for (int minute = 0; minute < WeekMinutes.MINUTES_IN_WEEK; minute += 7) {
+                assertEquals(serialized[id] + " at " + minute, compiled.isActive(minute), schedulesFile.isActive(id, minute));
+                assertEquals(serialized[id] + " at " + minute,
+                        TimeSpanGroupCollection.getMinutesTillBecomeActive(groups, minute), schedulesFile.minutesTillActive(id, minute));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsSpanOutOfDay() throws IOException {
+        ScheduleFile schedules = corrupt("127:200-300|", 2000);
+        try {
+            schedules.isActive(0, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            schedules.minutesTillActive(0, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            schedules.get(0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Writes a single schedule of one span and replaces the span start with the given one,
+     * encoded in the same number of bytes
+     */
+    private ScheduleFile corrupt(String serialized, int from) throws IOException {
+        List<Collection<TimeSpanGroup>> schedules = new ArrayList<Collection<TimeSpanGroup>>();
+        schedules.add(TimeSpanGroupCollection.valueOf(serialized));
+        File file = folder.newFile();
+        ScheduleFile.write(schedules, file);
+
+        RandomAccessFile raw = new RandomAccessFile(file, "r");
+        byte[] bytes = new byte[(int) raw.length()];
+        try {
+            raw.readFully(bytes);
+        } finally {
+            raw.close();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        // record: version, group count, day mask, span count, from, length
+        int position = buffer.getInt(8) + 4;
+        buffer.position(position);
+        TimeSpanCodec.writeVarint(buffer, from);
+        buffer.clear();
+        return ScheduleFile.wrap(buffer);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduleIndexTest {
+
+    private static final CompiledSchedule[] SCHEDULES = {
+            compile(""),
+            compile("62:540-1079|"),
+            compile("65:0-59,600-719|"),
+            compile("2:1440-1440|"),
+            compile("127:542-543|"),
+            compile("0:"),
+    };
+
+    private final ScheduleIndex index = new ScheduleIndex();
+    private final CompiledSchedule[] added = new CompiledSchedule[5000];
+
+    @Test
+    public void findsActiveSchedules() {
+        for (int id = 0; id < 30; id++)
+            add(id * 7, SCHEDULES[id % SCHEDULES.length]);
+        assertAgrees();
+    }
+
+    @Test
+    public void staysCorrectWhileSetsChangeRepresentation() {
+        // Mostly active schedules with dense ids turn slot sets into bitsets
+        for (int id = 0; id < 1000; id++)
+            add(id, SCHEDULES[id % 3]);
+        add(4999, SCHEDULES[1]);
+        assertAgrees();
+
+        // Removing most of them turns them back into arrays
+        for (int id = 0; id < 1000; id++)
+            if (id % 50 != 0)
+                remove(id);
+        assertAgrees();
+
+        for (int id = 0; id < 1000; id += 3)
+            add(id, SCHEDULES[4]);
+        assertAgrees();
+    }
+
+    @Test
+    public void replacesAndRemovesSchedules() {
+        add(3, SCHEDULES[1]);
+        add(3, SCHEDULES[2]);
+        assertEquals(1, index.size());
+        assertTrue(index.get(3) == SCHEDULES[2]);
+        assertAgrees();
+
+        assertTrue(remove(3));
+        assertFalse(remove(3));
+        assertFalse(index.remove(-1));
+        assertNull(index.get(3));
+        assertEquals(0, index.size());
+        assertEquals(0, index.activeAt(0).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeId() {
+        index.add(-1, SCHEDULES[0]);
+    }
+
+    private void add(int id, CompiledSchedule schedule) {
+        index.add(id, schedule);
+        added[id] = schedule;
+    }
+
+    private boolean remove(int id) {
+        added[id] = null;
+        return index.remove(id);
+    }
+
+    private void assertAgrees() {
+        for (int minute = 0; minute < WeekMinutes.MINUTES_IN_WEEK; minute += 3) {
+            int[] expected = new int[added.length];
+            int count = 0;
+            for (int id = 0; id < added.length; id++)
+                if (added[id] != null && added[id].isActive(minute))
+                    expected[count++] = id;
+            assertArrayEquals("at " + minute, Arrays.copyOf(expected, count), index.activeAt(minute));
+        }
+    }
+
+    private static CompiledSchedule compile(String serialized) {
+        return CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf(serialized));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TimeSpanCodecTest {
+
+    @Test
+    public void collectionRoundTrip() {
+        assertRoundTrip("62:540-1079|65:0-59,600-719,1380-1440|");
+        assertRoundTrip("127:0-1440|");
+        assertRoundTrip("0:|");
+        assertRoundTrip("5:1440-1440|2:0-0|");
+        assertRoundTrip("");
+    }
+
+    @Test
+    public void groupRoundTrip() {
+        TimeSpanGroup group = TimeSpanGroup.valueOf("34:0-10,200-300,1439-1440");
+        ByteBuffer buffer = ByteBuffer.allocate(TimeSpanCodec.encodedSize(group));
+        TimeSpanCodec.writeGroup(group, buffer);
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        assertEquals(group, TimeSpanCodec.readGroup(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void readsConsecutiveCollections() {
+        Collection<TimeSpanGroup> first = TimeSpanGroupCollection.valueOf("2:60-119|");
+        Collection<TimeSpanGroup> second = TimeSpanGroupCollection.valueOf("4:0-10|8:20-30|");
+        ByteBuffer buffer = ByteBuffer.allocate(TimeSpanCodec.encodedSize(first) + TimeSpanCodec.encodedSize(second));
+        TimeSpanCodec.writeCollection(first, buffer);
+        TimeSpanCodec.writeCollection(second, buffer);
+
+        buffer.flip();
+        assertEquals(new ArrayList<TimeSpanGroup>(first), TimeSpanCodec.readCollection(buffer));
+        assertEquals(new ArrayList<TimeSpanGroup>(second), TimeSpanCodec.readCollection(buffer));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void truncatedInputUnderflows() {
+        ByteBuffer buffer = encode(TimeSpanGroupCollection.valueOf("62:540-1079|"));
+        buffer.limit(buffer.limit() - 1);
+        TimeSpanCodec.readCollection(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        ByteBuffer buffer = encode(TimeSpanGroupCollection.valueOf("62:540-1079|"));
+        buffer.put(0, (byte) (TimeSpanCodec.VERSION + 1));
+        TimeSpanCodec.readCollection(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidDayMask() {
+        ByteBuffer buffer = encode(TimeSpanGroupCollection.valueOf("62:540-1079|"));
+        buffer.put(2, (byte) 0x80);
+        TimeSpanCodec.readCollection(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSpanOutOfDay() {
+        // 127:2000-2100, which the parser rejects as well
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) TimeSpanCodec.VERSION).put((byte) 1).put((byte) 127).put((byte) 1);
+        TimeSpanCodec.writeVarint(buffer, 2000);
+        TimeSpanCodec.writeVarint(buffer, 100);
+        buffer.flip();
+        TimeSpanCodec.readCollection(buffer);
+    }
+
+    @Test
+    public void acceptsSpanEndingAtDayEnd() {
+        assertRoundTrip("127:1440-1440|");
+    }
+
+    private static void assertRoundTrip(String serialized) {
+        Collection<TimeSpanGroup> groups = TimeSpanGroupCollection.valueOf(serialized);
+        ByteBuffer buffer = encode(groups);
+        List<TimeSpanGroup> decoded = TimeSpanCodec.readCollection(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(new ArrayList<TimeSpanGroup>(groups), decoded);
+        assertEquals(serialized, TimeSpanGroupCollection.toString(decoded));
+    }
+
+    private static ByteBuffer encode(Collection<TimeSpanGroup> groups) {
+        ByteBuffer buffer = ByteBuffer.allocate(TimeSpanCodec.encodedSize(groups));
+        TimeSpanCodec.writeCollection(groups, buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        return buffer;
+    }
+}
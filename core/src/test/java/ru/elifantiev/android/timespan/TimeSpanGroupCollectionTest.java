@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimeSpanGroupCollectionTest {
+
+    @Test
+    public void union() {
+        assertEquals("[4:0-10, 2:60-200]", union("2:60-119|", "2:100-200|4:0-10|"));
+        assertEquals("[4:0-1440]", union("4:0-1439|", "4:1439-1439|"));
+        assertEquals("[2:0-10]", union("0:", "2:0-10|"));
+        // Empty collection is active anytime
+        assertEquals("[127:0-1440]", union("", "2:0-10|"));
+    }
+
+    @Test
+    public void intersect() {
+        assertEquals("[2:100-119]", intersect("6:60-119|", "2:100-200|4:0-10|"));
+        assertEquals("[2:0-10]", intersect("", "2:0-10|"));
+        assertEquals("[0:]", intersect("2:0-10|", "4:0-10|"));
+    }
+
+    @Test
+    public void subtract() {
+        assertEquals("[4:60-119, 2:60-99]", subtract("6:60-119|", "2:100-200|"));
+        assertEquals("[0:]", subtract("2:0-10|", "2:0-10|"));
+        assertEquals("[2:0-10]", subtract("2:0-10|", "0:"));
+    }
+
+    @Test
+    public void complement() {
+        assertEquals("[1:0-1440]", complement("126:0-1440|"));
+        assertEquals("[0:]", complement(""));
+        assertEquals("[0:]", complement("127:0-1439|"));
+        assertEquals("[127:0-1440]", complement("0:"));
+    }
+
+    @Test
+    public void complementTwiceIsNormalForm() {
+        String schedule = "62:540-1079|65:0-59,600-719|";
+        assertEquals(TimeSpanGroupCollection.normalize(v(schedule)),
+                TimeSpanGroupCollection.complement(TimeSpanGroupCollection.complement(v(schedule))));
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals("[12:0-1440, 3:0-100]", String.valueOf(TimeSpanGroupCollection.normalize(v("1:0-100|2:0-100|4:0-1439|8:0-1440|"))));
+        assertEquals("[127:0-1440]", String.valueOf(TimeSpanGroupCollection.normalize(v("127:0-1440|"))));
+    }
+
+    @Test
+    public void setOperationsAgreeWithEvaluation() {
+        Collection<TimeSpanGroup> first = v("62:540-1079|65:0-59,600-719|");
+        Collection<TimeSpanGroup> second = v("6:1000-1440|1:30-30|");
+        List<TimeSpanGroup> union = TimeSpanGroupCollection.union(first, second);
+        List<TimeSpanGroup> intersection = TimeSpanGroupCollection.intersect(first, second);
+        List<TimeSpanGroup> difference = TimeSpanGroupCollection.subtract(first, second);
+        List<TimeSpanGroup> complement = TimeSpanGroupCollection.complement(first);
+        for (int minute = 0; minute < WeekMinutes.MINUTES_IN_WEEK; minute++) {
+            boolean a = isActive(first, minute), b = isActive(second, minute);
+            assertEquals("union at " + minute, a || b, isActive(union, minute));
+            assertEquals("intersect at " + minute, a && b, isActive(intersection, minute));
+            assertEquals("subtract at " + minute, a && !b, isActive(difference, minute));
+            assertEquals("complement at " + minute, !a, isActive(complement, minute));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void tillMaxContinuousRangeEnd() {
+        // Stops at the end of day and counts till the last active minute, as the baseline did
+        assertEquals(1390, TimeSpanGroupCollection.tillMaxContinuousRangeEnd(new HashSet<TimeSpanGroup>(v("1:0-1440|2:0-100|")), 50));
+        assertEquals(100, TimeSpanGroupCollection.tillMaxContinuousRangeEnd(new HashSet<TimeSpanGroup>(v("127:600-900|")), 800));
+        assertEquals(-1, TimeSpanGroupCollection.tillMaxContinuousRangeEnd(new HashSet<TimeSpanGroup>(v("127:600-900|")), 901));
+    }
+
+    @Test
+    public void minutesTillRangeEnd() {
+        // Follows the range into the next day and counts till the first inactive minute
+        assertEquals(1491, TimeSpanGroupCollection.minutesTillRangeEnd(compile("1:0-1440|2:0-100|"), 50));
+        assertEquals(101, TimeSpanGroupCollection.minutesTillRangeEnd(compile("127:600-900|"), 800));
+        assertEquals(-1, TimeSpanGroupCollection.minutesTillRangeEnd(compile("127:600-900|"), 901));
+        assertEquals(Integer.MAX_VALUE, TimeSpanGroupCollection.minutesTillRangeEnd(compile("127:0-1440|"), 0));
+    }
+
+    @Test
+    public void writesAndReadsBack() {
+        String serialized = "1:0-100|2:0-100|";
+        assertEquals(serialized, TimeSpanGroupCollection.toString(v(serialized)));
+        assertEquals(0, v("").size());
+    }
+
+    private static boolean isActive(Collection<TimeSpanGroup> groups, int minuteOfWeek) {
+        return CompiledSchedule.fromGroupCollection(groups).isActive(minuteOfWeek);
+    }
+
+    private static CompiledSchedule compile(String serialized) {
+        return CompiledSchedule.fromGroupCollection(v(serialized));
+    }
+
+    private static Collection<TimeSpanGroup> v(String serialized) {
+        return TimeSpanGroupCollection.valueOf(serialized);
+    }
+
+    private static String union(String first, String second) {
+        return String.valueOf(TimeSpanGroupCollection.union(v(first), v(second)));
+    }
+
+    private static String intersect(String first, String second) {
+        return String.valueOf(TimeSpanGroupCollection.intersect(v(first), v(second)));
+    }
+
+    private static String subtract(String first, String second) {
+        return String.valueOf(TimeSpanGroupCollection.subtract(v(first), v(second)));
+    }
+
+    private static String complement(String serialized) {
+        return String.valueOf(TimeSpanGroupCollection.complement(v(serialized)));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.elifantiev.android.timespan.TimeSpanParser.*;
+
+public class TimeSpanParserTest {
+
+    private final TimeSpanParser parser = new TimeSpanParser();
+
+    @Test
+    public void parsesGroup() {
+        TimeSpanGroup group = parse("5:10-20,30-40");
+        assertEquals("5:10-20,30-40", group.toString());
+        assertEquals(OK, parser.getErrorCode());
+        assertEquals(-1, parser.getErrorPosition());
+    }
+
+    @Test
+    public void acceptsTrailingCommaAndNoSpans() {
+        assertEquals("5:10-20", parse("5:10-20,,").toString());
+        assertEquals("5:", parse("5:").toString());
+    }
+
+    @Test
+    public void clampsSpansToDay() {
+        assertEquals("5:1440-1440", parse("5:1440-1500").toString());
+    }
+
+    @Test
+    public void reportsErrorCodesAndPositions() {
+        assertError("5", ERROR_NO_DAY_SEPARATOR, 1);
+        assertError("x:10-20", ERROR_INVALID_NUMBER, 0);
+        assertError(":10-20", ERROR_INVALID_NUMBER, 0);
+        assertError("128:10-20", ERROR_INVALID_DAY_MASK, 0);
+        assertError("5:10", ERROR_NO_TIME_SEPARATOR, 2);
+        assertError("5:10-20,30", ERROR_NO_TIME_SEPARATOR, 8);
+        assertError("5:10-2a", ERROR_INVALID_NUMBER, 6);
+        assertError("5:10-20,30-", ERROR_INVALID_NUMBER, 11);
+        assertError("5:0-99999999999", ERROR_INVALID_NUMBER, 13);
+        assertError("5:20-10", ERROR_REVERSED_RANGE, 2);
+        assertError("5:1500-1600", ERROR_SPAN_OUT_OF_DAY, 2);
+        assertError("5:10-20,1500-1600", ERROR_SPAN_OUT_OF_DAY, 8);
+    }
+
+    @Test
+    public void positionsAreRelativeToWholeSequence() {
+        String source = "[[5:20-10]]";
+        assertNull(parser.parseGroup(source, 2, 9));
+        assertEquals(ERROR_REVERSED_RANGE, parser.getErrorCode());
+        assertEquals(4, parser.getErrorPosition());
+
+        assertEquals("5:10-20", parser.parseGroup("[[5:10-20]]", 2, 9).toString());
+        assertEquals(OK, parser.getErrorCode());
+        assertEquals(-1, parser.getErrorPosition());
+    }
+
+    @Test
+    public void parsesSpan() {
+        assertEquals(new TimeSpan(60, 119), parser.parseSpan("60-119", 0, 6));
+        assertNull(parser.parseSpan("60", 0, 2));
+        assertEquals(ERROR_NO_TIME_SEPARATOR, parser.getErrorCode());
+        assertEquals(0, parser.getErrorPosition());
+    }
+
+    @Test
+    public void collectionKeepsGroupsBeforeError() {
+        List<TimeSpanGroup> result = new ArrayList<TimeSpanGroup>();
+        assertEquals(ERROR_INVALID_NUMBER, parser.parseCollection("1:0-10||2:x-5|4:0-10|", result));
+        assertEquals(10, parser.getErrorPosition());
+        assertEquals(1, result.size());
+        assertEquals("1:0-10", result.get(0).toString());
+
+        result.clear();
+        assertEquals(OK, parser.parseCollection("1:0-10|2:0-5|", result));
+        assertEquals(2, result.size());
+        assertEquals(OK, parser.parseCollection(null, result));
+    }
+
+    @Test
+    public void valueOfReportsErrorInMessage() {
+        try {
+            TimeSpanGroup.valueOf("5:1500-1600");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("(error 6 at 2)"));
+        }
+    }
+
+    private TimeSpanGroup parse(String source) {
+        TimeSpanGroup group = parser.parseGroup(source, 0, source.length());
+        assertEquals(source, OK, parser.getErrorCode());
+        return group;
+    }
+
+    private void assertError(String source, int code, int position) {
+        assertNull(source, parser.parseGroup(source, 0, source.length()));
+        assertEquals(source, code, parser.getErrorCode());
+        assertEquals(source, position, parser.getErrorPosition());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.elifantiev.android.timespan.ManualClock.MINUTE;
+import static ru.elifantiev.android.timespan.ManualClock.SUNDAY;
+import static ru.elifantiev.android.timespan.WeekMinutes.MINUTES_IN_WEEK;
+
+public class TransitionIteratorTest {
+
+    // Saturday 23:00 till Sunday 00:59, merged over the week end
+    private static final CompiledSchedule OVER_WEEK_END =
+            CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("64:1380-1439|1:0-59|"));
+
+    @Test
+    public void wrapsAroundWeekEnd() {
+        // Saturday 23:30
+        long start = SUNDAY + 10050 * MINUTE;
+        TransitionIterator i = OVER_WEEK_END.transitions(start, start + 2 * MINUTES_IN_WEEK * MINUTE, 0);
+
+        assertTransition(i, SUNDAY + (MINUTES_IN_WEEK + 60) * MINUTE, false);
+        assertTransition(i, SUNDAY + (MINUTES_IN_WEEK + 10020) * MINUTE, true);
+        assertTransition(i, SUNDAY + (2 * MINUTES_IN_WEEK + 60) * MINUTE, false);
+        assertTransition(i, SUNDAY + (2 * MINUTES_IN_WEEK + 10020) * MINUTE, true);
+        assertFalse(i.next());
+    }
+
+    @Test
+    public void skipsTransitionAtStartMinute() {
+        TransitionIterator i = OVER_WEEK_END.transitions(SUNDAY + 60 * MINUTE + 30000, SUNDAY + MINUTES_IN_WEEK * MINUTE, 0);
+        assertTransition(i, SUNDAY + 10020 * MINUTE, true);
+        assertFalse(i.next());
+    }
+
+    @Test
+    public void horizonIsInclusive() {
+        long horizon = SUNDAY + 60 * MINUTE;
+        TransitionIterator i = OVER_WEEK_END.transitions(SUNDAY, horizon, 0);
+        assertTransition(i, horizon, false);
+        assertFalse(i.next());
+
+        assertFalse(OVER_WEEK_END.transitions(SUNDAY, horizon - 1, 0).next());
+    }
+
+    @Test
+    public void startsBeforeEpoch() {
+        // Saturday 1969-12-27 23:30 UTC
+        long start = SUNDAY - 2 * MINUTES_IN_WEEK * MINUTE + 10050 * MINUTE;
+        TransitionIterator i = OVER_WEEK_END.transitions(start, SUNDAY + 60 * MINUTE, 0);
+        assertTransition(i, SUNDAY - MINUTES_IN_WEEK * MINUTE + 60 * MINUTE, false);
+        assertTransition(i, SUNDAY - 60 * MINUTE, true);
+        assertTransition(i, SUNDAY + 60 * MINUTE, false);
+        assertFalse(i.next());
+    }
+
+    @Test
+    public void usesZoneOffset() {
+        int offset = -5 * 60 * 60 * 1000;
+        // Starts on Saturday 19:00 local time, Saturday 23:00 at UTC-5 is Sunday 04:00 UTC
+        TransitionIterator i = OVER_WEEK_END.transitions(SUNDAY, SUNDAY + MINUTES_IN_WEEK * MINUTE, offset);
+        assertTransition(i, SUNDAY + 4 * 60 * MINUTE, true);
+        assertTransition(i, SUNDAY + 6 * 60 * MINUTE, false);
+        assertFalse(i.next());
+    }
+
+    @Test
+    public void countsTransitionsOverManyWeeks() {
+        CompiledSchedule workdays = CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("62:540-1079|"));
+        TransitionIterator i = workdays.transitions(SUNDAY, SUNDAY + 4 * MINUTES_IN_WEEK * MINUTE - 1, 0);
+        int activations = 0, deactivations = 0;
+        while (i.next()) {
+            if (i.isActivation())
+                activations++;
+            else
+                deactivations++;
+        }
+        assertEquals(20, activations);
+        assertEquals(20, deactivations);
+    }
+
+    @Test
+    public void noTransitionsForConstantSchedules() {
+        CompiledSchedule anytime = CompiledSchedule.fromGroupCollection(Collections.<TimeSpanGroup>emptyList());
+        assertFalse(anytime.transitions(SUNDAY, Long.MAX_VALUE, 0).next());
+        CompiledSchedule never = CompiledSchedule.fromGroupCollection(TimeSpanGroupCollection.valueOf("0:"));
+        assertFalse(never.transitions(SUNDAY, Long.MAX_VALUE, 0).next());
+    }
+
+    private static void assertTransition(TransitionIterator i, long time, boolean activation) {
+        assertTrue(i.next());
+        assertEquals(time, i.getTime());
+        assertEquals(activation, i.isActivation());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.elifantiev.android.timespan.ManualClock.MINUTE;
+import static ru.elifantiev.android.timespan.ManualClock.SUNDAY;
+
+public class TransitionWheelTest {
+
+    // Monday 01:00-01:59
+    private static final String MONDAY_HOUR = "2:60-119|";
+
+    private ManualClock clock;
+    private TransitionWheel wheel;
+    private Recorder recorder;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(SUNDAY);
+        wheel = new TransitionWheel(clock, 0);
+        recorder = new Recorder(0);
+    }
+
+    @Test
+    public void firesAtTransitionMinutes() {
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+
+        clock.advanceMinutes(1440 + 59);
+        assertEquals(0, wheel.tick());
+        clock.advanceMinutes(1);
+        assertEquals(1, wheel.tick());
+        assertEquals(0, wheel.tick());
+        clock.advanceMinutes(60);
+        assertEquals(1, wheel.tick());
+
+        assertEquals(Arrays.asList("1 on 1500", "1 off 1560"), recorder.events);
+        assertEquals(SUNDAY + 1560 * MINUTE, recorder.lastTime);
+    }
+
+    @Test
+    public void catchesUpMissedMinutesInOrder() {
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+        wheel.register(2, TimeSpanGroupCollection.valueOf("2:90-100|"), recorder);
+
+        clock.advanceMinutes(2 * 1440);
+        assertEquals(4, wheel.tick());
+        assertEquals(Arrays.asList("1 on 1500", "2 on 1530", "2 off 1541", "1 off 1560"), recorder.events);
+    }
+
+    @Test
+    public void firesOnlyLastWeekAfterLongPause() {
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+
+        clock.advanceMinutes(3 * WeekMinutes.MINUTES_IN_WEEK + 1440);
+        assertEquals(2, wheel.tick());
+        assertEquals(Arrays.asList("1 on 1500", "1 off 1560"), recorder.events);
+        assertEquals(SUNDAY + (2 * WeekMinutes.MINUTES_IN_WEEK + 1560) * MINUTE, recorder.lastTime);
+    }
+
+    @Test
+    public void firesAcrossWeekEnd() {
+        // Saturday 23:00 till Sunday 00:59
+        wheel.register(1, TimeSpanGroupCollection.valueOf("64:1380-1439|1:0-59|"), recorder);
+
+        clock.advanceMinutes(WeekMinutes.MINUTES_IN_WEEK);
+        assertEquals(2, wheel.tick());
+        clock.advanceMinutes(120);
+        assertEquals(1, wheel.tick());
+        assertEquals(Arrays.asList("1 off 60", "1 on 10020", "1 off 60"), recorder.events);
+    }
+
+    @Test
+    public void reschedulesTransitionsSkippedByLongPause() {
+        wheel.register(1, TimeSpanGroupCollection.valueOf("64:1380-1439|1:0-59|"), recorder);
+
+        // Transition at minute 60 falls out of the last week, the one at 10020 does not
+        clock.advanceMinutes(WeekMinutes.MINUTES_IN_WEEK + 120);
+        assertEquals(2, wheel.tick());
+        assertEquals(Arrays.asList("1 on 10020", "1 off 60"), recorder.events);
+    }
+
+    @Test
+    public void unregisteredScheduleDoesNotFire() {
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+        wheel.register(2, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+        assertEquals(2, wheel.size());
+
+        assertTrue(wheel.unregister(1));
+        assertFalse(wheel.unregister(1));
+        assertFalse(wheel.isRegistered(1));
+        assertTrue(wheel.isRegistered(2));
+
+        clock.advanceMinutes(2 * 1440);
+        assertEquals(2, wheel.tick());
+        assertEquals(Arrays.asList("2 on 1500", "2 off 1560"), recorder.events);
+    }
+
+    @Test
+    public void registerReplacesScheduleWithSameId() {
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+        wheel.register(1, TimeSpanGroupCollection.valueOf("4:0-9|"), recorder);
+        assertEquals(1, wheel.size());
+
+        clock.advanceMinutes(3 * 1440);
+        assertEquals(2, wheel.tick());
+        assertEquals(Arrays.asList("1 on 2880", "1 off 2890"), recorder.events);
+    }
+
+    @Test
+    public void listenerMayUnregisterDuringTick() {
+        final List<Integer> fired = new ArrayList<Integer>();
+        TransitionWheel.Listener once = new TransitionWheel.Listener() {
+            public void onTransition(int id, boolean active, long timeMillis) {
+                fired.add(id);
+                wheel.unregister(id);
+            }
+        };
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), once);
+        wheel.register(2, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), once);
+
+        clock.advanceMinutes(2 * 1440);
+        assertEquals(2, wheel.tick());
+        assertEquals(2, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void scheduleWithoutTransitionsNeverFires() {
+        wheel.register(1, Collections.<TimeSpanGroup>emptyList(), recorder);
+        wheel.register(2, TimeSpanGroupCollection.valueOf("127:0-1440|"), recorder);
+        wheel.register(3, TimeSpanGroupCollection.valueOf("0:"), recorder);
+
+        clock.advanceMinutes(WeekMinutes.MINUTES_IN_WEEK);
+        assertEquals(0, wheel.tick());
+        assertEquals(3, wheel.size());
+    }
+
+    @Test
+    public void usesZoneOffset() {
+        int offset = 3 * 60 * 60 * 1000;
+        wheel = new TransitionWheel(clock, offset);
+        recorder = new Recorder(offset);
+        wheel.register(1, TimeSpanGroupCollection.valueOf(MONDAY_HOUR), recorder);
+
+        // Monday 01:00 at UTC+3 is Sunday 22:00 UTC
+        clock.advanceMinutes(22 * 60 - 1);
+        assertEquals(0, wheel.tick());
+        clock.advanceMinutes(1);
+        assertEquals(1, wheel.tick());
+        assertEquals(Arrays.asList("1 on 1500"), recorder.events);
+        assertEquals(SUNDAY + 22 * 60 * MINUTE, recorder.lastTime);
+    }
+
+    private static final class Recorder implements TransitionWheel.Listener {
+        final List<String> events = new ArrayList<String>();
+        final int zoneOffsetMillis;
+        long lastTime;
+
+        Recorder(int zoneOffsetMillis) {
+            this.zoneOffsetMillis = zoneOffsetMillis;
+        }
+
+        public void onTransition(int id, boolean active, long timeMillis) {
+            events.add(id + (active ? " on " : " off ") + WeekMinutes.fromEpochMillis(timeMillis, zoneOffsetMillis));
+            lastTime = timeMillis;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static ru.elifantiev.android.timespan.ManualClock.MINUTE;
+import static ru.elifantiev.android.timespan.ManualClock.SUNDAY;
+import static ru.elifantiev.android.timespan.WeekMinutes.*;
+
+public class WeekMinutesTest {
+
+    @Test
+    public void epochIsThursday() {
+        assertEquals(4 * MINUTES_IN_DAY, fromEpochMillis(0, 0));
+        assertEquals(0, fromEpochMillis(SUNDAY, 0));
+    }
+
+    @Test
+    public void roundsDownBeforeEpoch() {
+        assertEquals(-1, localMinute(-1, 0));
+        assertEquals(4 * MINUTES_IN_DAY - 1, fromEpochMillis(-1, 0));
+        assertEquals(MINUTES_IN_WEEK - 1, fromEpochMillis(SUNDAY - 1, 0));
+    }
+
+    @Test
+    public void appliesZoneOffset() {
+        assertEquals(MINUTES_IN_WEEK - 60, fromEpochMillis(SUNDAY, -60 * (int) MINUTE));
+        assertEquals(90, fromEpochMillis(SUNDAY, 90 * (int) MINUTE));
+    }
+
+    @Test
+    public void localMinuteRoundTrip() {
+        int offset = 5 * 60 * (int) MINUTE + 30 * (int) MINUTE;
+        for (long local = -20000; local < 20000; local += 7) {
+            assertEquals(local, localMinute(toEpochMillis(local, offset), offset));
+            assertEquals(local, localMinute(toEpochMillis(local, offset) + MINUTE - 1, offset));
+        }
+    }
+
+    @Test
+    public void agreesWithCalendar() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/Moscow");
+        Calendar cal = Calendar.getInstance(zone);
+        for (long millis = SUNDAY; millis < SUNDAY + 2 * MINUTES_IN_WEEK * MINUTE; millis += 37 * MINUTE + 1234) {
+            cal.setTimeInMillis(millis);
+            assertEquals(fromCalendar(cal), fromEpochMillis(millis, zone.getOffset(millis)));
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan.harness;
+
+
+import ru.elifantiev.android.timespan.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Randomized differential test of every schedule engine against ReferenceSchedule, the frozen
+ * original implementation. Generates schedules biased towards day and span edges, evaluates them
+ * at random minutes and at every span edge of the week, and on the first mismatch shrinks the
+ * schedule to a minimal failing one. DifferentialHarnessTest runs a few rounds with a fixed seed,
+ * longer runs are started from the core module after mvn test-compile:
+ * <pre>
+ * java -cp target/classes:target/test-classes ru.elifantiev.android.timespan.harness.DifferentialHarness [seed] [rounds]
+ * </pre>
+ * Exits with status 1 if any engine disagrees with the reference.
+ * <p>
+ * Minutes till active are compared for every engine, an exception is expected exactly where the
+ * reference throws. Bulk evaluation reports that case as -1. Transitions reported by
+ * TransitionIterator and TransitionWheel are compared with the reference state change at
+ * the minute, so minutes are checked in ascending order.
+ */
+public final class DifferentialHarness {
+
+    private static final int MINUTES_IN_DAY = 1440;
+    private static final int MINUTES_IN_WEEK = 7 * MINUTES_IN_DAY;
+    // 1970-01-04 00:00 UTC is Sunday, minute 0 of the week
+    private static final long WEEK_START_MILLIS = 3L * MINUTES_IN_DAY * 60 * 1000;
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final int THROWS = Integer.MIN_VALUE;
+    // State change at a minute
+    private static final int NONE = 0;
+    private static final int ACTIVATION = 1;
+    private static final int DEACTIVATION = 2;
+
+    private static final int SCHEDULES_PER_ROUND = 50;
+    private static final int RANDOM_MINUTES = 100;
+
+    private DifferentialHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        System.out.println("Seed " + seed + ", " + rounds + " rounds of " + SCHEDULES_PER_ROUND + " schedules");
+
+        long started = System.currentTimeMillis();
+        String mismatch = run(seed, rounds);
+        if (mismatch != null) {
+            System.out.println(mismatch);
+            System.exit(1);
+        }
+        System.out.println("OK, " + rounds * SCHEDULES_PER_ROUND + " schedules in " + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    /**
+     * @return description of the first mismatch with its minimal failing schedule, null if all engines agree
+     */
+    static String run(long seed, int rounds) throws IOException {
+        Random random = new Random(seed);
+        // Small chunks, so the parallel path is exercised too
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BulkEvaluator bulk = new BulkEvaluator(executor, 2, 8);
+            for (int round = 0; round < rounds; round++) {
+                String mismatch = runRound(random, bulk);
+                if (mismatch != null)
+                    return mismatch;
+            }
+            return null;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String runRound(Random random, BulkEvaluator bulk) throws IOException {
+        int[][][] schedules = new int[SCHEDULES_PER_ROUND][][];
+        for (int i = 0; i < schedules.length; i++)
+            schedules[i] = randomSchedule(random);
+
+        Engines engines = new Engines(schedules, bulk);
+        try {
+            int[] minutes = minutesToCheck(schedules, random);
+            for (int m = 0; m < minutes.length; m++) {
+                if (engines.check(minutes[m]) != null) {
+                    int failing = engines.getFailingSchedule();
+                    // Memoized and wheel engines keep state, so shrinking replays all minutes checked so far
+                    int[] replay = Arrays.copyOf(minutes, m + 1);
+                    int[][] minimal = shrink(schedules[failing], replay, bulk);
+                    return "MISMATCH " + new Engines(new int[][][]{minimal}, bulk).checkAndClose(replay)
+                            + "\n  original schedule: " + toSpec(schedules[failing])
+                            + "\n  minimal schedule:  " + toSpec(minimal);
+                }
+            }
+        } finally {
+            engines.close();
+        }
+        return null;
+    }
+
+    /**
+     * @return groups as {dayMask, from, to, from, to, ...}
+     */
+    private static int[][] randomSchedule(Random random) {
+        int groupCount = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(4);
+        int[][] groups = new int[groupCount][];
+        for (int g = 0; g < groupCount; g++) {
+            int dayMask = random.nextInt(30) == 0 ? 0 : 1 + random.nextInt(127);
+            int spanCount = 1 + random.nextInt(4);
+            int[] group = new int[1 + spanCount * 2];
+            group[0] = dayMask;
+            for (int s = 0; s < spanCount; s++) {
+                // 1440-1440 is a valid span that is never active, but still counts as a start
+                int from = randomMinute(random, 0, MINUTES_IN_DAY);
+                int to = randomMinute(random, from, MINUTES_IN_DAY);
+                group[1 + s * 2] = from;
+                group[2 + s * 2] = to;
+            }
+            groups[g] = group;
+        }
+        return groups;
+    }
+
+    /**
+     * @return minute in [min, max], every third one on a range edge
+     */
+    private static int randomMinute(Random random, int min, int max) {
+        switch (random.nextInt(9)) {
+            case 0:
+                return min;
+            case 1:
+                return max;
+            case 2:
+                return Math.min(max, min + 1);
+            default:
+                return min + random.nextInt(max - min + 1);
+        }
+    }
+
+    /**
+     * Random minutes plus minutes around every span edge on every day
+     */
+    private static int[] minutesToCheck(int[][][] schedules, Random random) {
+        Set<Integer> minutes = new TreeSet<Integer>();
+        for (int i = 0; i < RANDOM_MINUTES; i++)
+            minutes.add(random.nextInt(MINUTES_IN_WEEK));
+        for (int[][] schedule : schedules)
+            for (int[] group : schedule)
+                for (int s = 1; s < group.length; s++)
+                    for (int day = 0; day < 7; day++)
+                        for (int delta = -1; delta <= 1; delta++)
+                            minutes.add(((day * MINUTES_IN_DAY + group[s] + delta) % MINUTES_IN_WEEK + MINUTES_IN_WEEK) % MINUTES_IN_WEEK);
+        int[] result = new int[minutes.size()];
+        int i = 0;
+        for (int minute : minutes)
+            result[i++] = minute;
+        return result;
+    }
+
+    /**
+     * Greedily removes groups, spans and days and narrows spans while the mismatch persists
+     */
+    private static int[][] shrink(int[][] schedule, int[] minutes, BulkEvaluator bulk) throws IOException {
+        int[][] current = schedule;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int[][] candidate : simplifications(current)) {
+                if (new Engines(new int[][][]{candidate}, bulk).checkAndClose(minutes) != null) {
+                    current = candidate;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static List<int[][]> simplifications(int[][] schedule) {
+        List<int[][]> result = new ArrayList<int[][]>();
+        for (int g = 0; g < schedule.length; g++) {
+            List<int[]> groups = new ArrayList<int[]>(Arrays.asList(schedule));
+            groups.remove(g);
+            result.add(groups.toArray(new int[groups.size()][]));
+        }
+        for (int g = 0; g < schedule.length; g++) {
+            int[] group = schedule[g];
+            for (int s = 1; group.length > 3 && s < group.length; s += 2) {
+                int[] smaller = new int[group.length - 2];
+                System.arraycopy(group, 0, smaller, 0, s);
+                System.arraycopy(group, s + 2, smaller, s, group.length - s - 2);
+                result.add(replace(schedule, g, smaller));
+            }
+            for (int day = 0; day < 7; day++) {
+                if ((group[0] & (1 << day)) != 0) {
+                    int[] fewerDays = group.clone();
+                    fewerDays[0] &= ~(1 << day);
+                    result.add(replace(schedule, g, fewerDays));
+                }
+            }
+            for (int s = 1; s < group.length; s += 2) {
+                int from = group[s], to = group[s + 1];
+                if (from < to) {
+                    int[] narrower = group.clone();
+                    narrower[s] = from + (to - from + 1) / 2;
+                    result.add(replace(schedule, g, narrower));
+                    narrower = group.clone();
+                    narrower[s + 1] = to - (to - from + 1) / 2;
+                    result.add(replace(schedule, g, narrower));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int[][] replace(int[][] schedule, int index, int[] group) {
+        int[][] result = schedule.clone();
+        result[index] = group;
+        return result;
+    }
+
+    static String toSpec(int[][] schedule) {
+        StringBuilder builder = new StringBuilder();
+        for (int[] group : schedule) {
+            builder.append(group[0]).append(':');
+            for (int s = 1; s < group.length; s += 2) {
+                if (s > 1)
+                    builder.append(',');
+                builder.append(group[s]).append('-').append(group[s + 1]);
+            }
+            builder.append('|');
+        }
+        return builder.toString();
+    }
+
+    private static String describe(int minute) {
+        String[] days = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
+        int minuteOfDay = minute % MINUTES_IN_DAY;
+        return String.format("%s %02d:%02d", days[minute / MINUTES_IN_DAY], minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    /**
+     * The reference and every engine under test, built for the same set of schedules
+     */
+    private static final class Engines {
+
+        private final ReferenceSchedule[] reference;
+        private final List<Collection<TimeSpanGroup>> intervals = new ArrayList<Collection<TimeSpanGroup>>();
+        private final CompiledSchedule[] bitmaps;
+        private final File flyweightFile;
+        private final ScheduleFile flyweight;
+        private final ScheduleIndex index = new ScheduleIndex();
+        private final BulkEvaluator bulk;
+        // Starts a minute before the checked week, so the wheel fires at minute 0 too
+        private final MutableClock clock = new MutableClock(WEEK_START_MILLIS - MINUTE_MILLIS);
+        private final MemoizedSchedule[] memoized;
+        // Transition listed by TransitionIterator for every minute of the week
+        private final int[][] iterated;
+        private final TransitionWheel wheel = new TransitionWheel(clock, 0);
+        // Transition fired by the wheel at the checked minute
+        private final int[] fired;
+        private final Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        private int failingSchedule = -1;
+
+        Engines(int[][][] schedules, BulkEvaluator bulk) throws IOException {
+            this.bulk = bulk;
+            int count = schedules.length;
+            reference = new ReferenceSchedule[count];
+            bitmaps = new CompiledSchedule[count];
+            memoized = new MemoizedSchedule[count];
+            iterated = new int[count][MINUTES_IN_WEEK];
+            fired = new int[count];
+            TransitionWheel.Listener recorder = new TransitionWheel.Listener() {
+                public void onTransition(int id, boolean active, long timeMillis) {
+                    // A transition fired at some other minute is reported as a state change at the checked one
+                    fired[id] = timeMillis != clock.now ? -1 : active ? ACTIVATION : DEACTIVATION;
+                }
+            };
+            for (int i = 0; i < count; i++) {
+                String spec = toSpec(schedules[i]);
+                reference[i] = ReferenceSchedule.valueOf(spec);
+                intervals.add(TimeSpanGroupCollection.valueOf(spec));
+                bitmaps[i] = CompiledSchedule.fromGroupCollection(intervals.get(i));
+                index.add(i, bitmaps[i]);
+                memoized[i] = new MemoizedSchedule(bitmaps[i], clock, 0);
+                wheel.register(i, bitmaps[i], recorder);
+                TransitionIterator transitions = bitmaps[i].transitions(clock.now,
+                        WEEK_START_MILLIS + (MINUTES_IN_WEEK - 1) * MINUTE_MILLIS, 0);
+                while (transitions.next()) {
+                    int minute = (int) ((transitions.getTime() - WEEK_START_MILLIS) / MINUTE_MILLIS);
+                    iterated[i][minute] = transitions.isActivation() ? ACTIVATION : DEACTIVATION;
+                }
+            }
+            flyweightFile = File.createTempFile("schedules", ".bin");
+            ScheduleFile.write(intervals, flyweightFile);
+            flyweight = ScheduleFile.open(flyweightFile);
+        }
+
+        int getFailingSchedule() {
+            return failingSchedule;
+        }
+
+        void close() {
+            flyweightFile.delete();
+        }
+
+        /**
+         * Checks the minutes in order
+         * @return description of the first mismatch with its minute or null if all engines agree
+         */
+        String checkAndClose(int[] minutes) {
+            try {
+                for (int minute : minutes) {
+                    String mismatch = check(minute);
+                    if (mismatch != null)
+                        return mismatch + "\n  minute of week:    " + minute + " (" + describe(minute) + ")";
+                }
+                return null;
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * @return description of the first mismatch or null if all engines agree
+         */
+        String check(int minute) {
+            int count = reference.length;
+            long millis = WEEK_START_MILLIS + minute * MINUTE_MILLIS;
+
+            // Catch the wheel up to the previous minute, then record what it fires at this one
+            clock.now = millis - MINUTE_MILLIS;
+            wheel.tick();
+            Arrays.fill(fired, NONE);
+            clock.now = millis;
+            wheel.tick();
+
+            boolean[] batchActive = new boolean[count];
+            ScheduleBatch.isActive(bitmaps, millis, 0, batchActive);
+            boolean[] bulkActive = new boolean[count];
+            int[] bulkWait = new int[count];
+            bulk.evaluate(bitmaps, minute, bulkActive, bulkWait);
+            BitSet indexed = new BitSet(count);
+            for (int id : index.activeAt(minute))
+                indexed.set(id);
+
+            for (int i = 0; i < count; i++) {
+                failingSchedule = i;
+                cal.setTimeInMillis(millis - MINUTE_MILLIS);
+                boolean wasActive = reference[i].isActive(cal);
+                cal.setTimeInMillis(millis);
+                boolean active = reference[i].isActive(cal);
+                int transition = active == wasActive ? NONE : active ? ACTIVATION : DEACTIVATION;
+                int wait;
+                try {
+                    wait = reference[i].getMinutesTillBecomeActive(cal);
+                } catch (IllegalStateException e) {
+                    wait = THROWS;
+                }
+
+                String mismatch = compare("interval isActual", active, isActualAny(intervals.get(i), minute));
+                if (mismatch == null)
+                    mismatch = compare("bitmap isActive", active, bitmaps[i].isActive(minute));
+                if (mismatch == null)
+                    mismatch = compare("flyweight isActive", active, flyweight.isActive(i, minute));
+                if (mismatch == null)
+                    mismatch = compare("batch isActive", active, batchActive[i]);
+                if (mismatch == null)
+                    mismatch = compare("bulk active", active, bulkActive[i]);
+                if (mismatch == null)
+                    mismatch = compare("index activeAt", active, indexed.get(i));
+                if (mismatch == null)
+                    mismatch = compare("memoized isActive", active, memoized[i].isActive());
+                if (mismatch == null)
+                    mismatch = compareTransition("iterator transition", transition, iterated[i][minute]);
+                if (mismatch == null)
+                    mismatch = compareTransition("wheel transition", transition, fired[i]);
+                if (mismatch == null)
+                    mismatch = compare("interval getMinutesTillBecomeActive", wait, intervalWait(intervals.get(i), minute));
+                if (mismatch == null)
+                    mismatch = compare("flyweight minutesTillActive", wait, flyweightWait(i, minute));
+                if (mismatch == null)
+                    mismatch = compare("bitmap minutesTillActive", wait, bitmapWait(bitmaps[i], minute));
+                if (mismatch == null)
+                    mismatch = compare("bulk minutesTillActive", wait, bulkWait[i] == -1 ? THROWS : bulkWait[i]);
+                if (mismatch == null)
+                    mismatch = compare("memoized minutesTillActive", wait, memoizedWait(memoized[i]));
+                if (mismatch != null)
+                    return mismatch;
+            }
+            failingSchedule = -1;
+            return null;
+        }
+
+        private static boolean isActualAny(Collection<TimeSpanGroup> groups, int minute) {
+            if (groups.isEmpty())
+                return true;
+            for (TimeSpanGroup group : groups)
+                if (group.isActual(minute))
+                    return true;
+            return false;
+        }
+
+        private static int intervalWait(Collection<TimeSpanGroup> groups, int minute) {
+            try {
+                return TimeSpanGroupCollection.getMinutesTillBecomeActive(groups, minute);
+            } catch (IllegalStateException e) {
+                return THROWS;
+            }
+        }
+
+        private int flyweightWait(int id, int minute) {
+            try {
+                return flyweight.minutesTillActive(id, minute);
+            } catch (IllegalStateException e) {
+                return THROWS;
+            }
+        }
+
+        private static int bitmapWait(CompiledSchedule schedule, int minute) {
+            try {
+                return schedule.minutesTillActive(minute);
+            } catch (IllegalStateException e) {
+                return THROWS;
+            }
+        }
+
+        private static int memoizedWait(MemoizedSchedule schedule) {
+            try {
+                return schedule.minutesTillActive();
+            } catch (IllegalStateException e) {
+                return THROWS;
+            }
+        }
+
+        private static String compare(String engine, boolean expected, boolean actual) {
+            return expected == actual ? null : engine + ": expected " + expected + ", got " + actual;
+        }
+
+        private static String compare(String engine, int expected, int actual) {
+            return expected == actual ? null : engine + ": expected " + format(expected) + ", got " + format(actual);
+        }
+
+        private static String compareTransition(String engine, int expected, int actual) {
+            return expected == actual ? null : engine + ": expected " + formatTransition(expected) + ", got " + formatTransition(actual);
+        }
+
+        private static String format(int wait) {
+            return wait == THROWS ? "IllegalStateException" : String.valueOf(wait);
+        }
+
+        private static String formatTransition(int transition) {
+            switch (transition) {
+                case NONE:
+                    return "no transition";
+                case ACTIVATION:
+                    return "activation";
+                case DEACTIVATION:
+                    return "deactivation";
+                default:
+                    return "transition at another minute";
+            }
+        }
+    }
+
+    private static final class MutableClock implements Clock {
+
+        long now;
+
+        MutableClock(long now) {
+            this.now = now;
+        }
+
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+}
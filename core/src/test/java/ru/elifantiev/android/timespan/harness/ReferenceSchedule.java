@@ -0,0 +1,217 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan.harness;
+
+
+import java.util.*;
+
+/**
+ * Frozen copy of the original TreeSet based TimeSpan, TimeSpanGroup and
+ * TimeSpanGroupCollection logic, the oracle for DifferentialHarness.
+ * Do not optimize or fix this class: its behaviour is the reference.
+ */
+final class ReferenceSchedule {
+
+    private final List<Group> groups = new ArrayList<Group>();
+
+    private ReferenceSchedule() {
+    }
+
+    static ReferenceSchedule valueOf(String serialized) {
+        ReferenceSchedule result = new ReferenceSchedule();
+        if (serialized == null || "".equals(serialized))
+            return result;
+
+        String[] groups = serialized.split("\\|");
+        for (String group : groups) {
+            if (!"".equals(group)) {
+                result.groups.add(Group.valueOf(group));
+            }
+        }
+        return result;
+    }
+
+    boolean isActive(Calendar cal) {
+        if (groups.size() == 0)
+            return true;
+        for (Group group : groups)
+            if (group.isActual(cal))
+                return true;
+        return false;
+    }
+
+    int getMinutesTillBecomeActive(Calendar cal) {
+        if (groups.size() == 0)
+            return 0;
+
+        int minWait = Integer.MAX_VALUE;
+        for (Group group : groups) {
+            int thisWait = group.minutesTillBecomeAvailable(cal);
+            if (thisWait < minWait)
+                minWait = thisWait;
+        }
+        return minWait;
+    }
+
+    static final class Span implements Comparable<Span> {
+
+        private final int timeFrom, timeTo;
+
+        Span(int timeFrom, int timeTo) {
+            this.timeFrom = Math.max(0, timeFrom);
+            this.timeTo = Math.min(1440, timeTo);
+        }
+
+        static Span valueOf(String serialized) {
+            int timeSplit = serialized.indexOf('-');
+
+            if (timeSplit == -1)
+                throw new IllegalArgumentException("Trying to parse from wrong format");
+
+            int timeFrom, timeTo;
+            try {
+                timeFrom = Integer.valueOf(serialized.substring(0, timeSplit));
+                timeTo = Integer.valueOf(serialized.substring(timeSplit + 1));
+
+                if (timeFrom > timeTo)
+                    throw new IllegalArgumentException("Ranges are reversed");
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            } catch (StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+            return new Span(timeFrom, timeTo);
+        }
+
+        static int getCurrentMinutes(Calendar cal) {
+            int hour = cal.get(Calendar.HOUR_OF_DAY);
+            int min = cal.get(Calendar.MINUTE);
+            return hour * 60 + min;
+        }
+
+        int minutesTillBecomeActual(Calendar cal) {
+            if (isActual(cal))
+                return 0;
+            else {
+                int val = getCurrentMinutes(cal);
+                return timeFrom - val;
+            }
+        }
+
+        boolean isActual(Calendar cal) {
+            int val = getCurrentMinutes(cal);
+            return timeFrom <= val && val <= timeTo;
+        }
+
+        public int compareTo(Span timeSpan) {
+            int delta = timeFrom - timeSpan.timeFrom;
+            if (delta != 0)
+                return delta;
+
+            return timeTo - timeSpan.timeTo;
+        }
+    }
+
+    static final class Group {
+
+        static final int EVERYDAY = 127;
+
+        private TreeSet<Span> storage = new TreeSet<Span>();
+        private final int dayMask;
+
+        Group(int dayMask) {
+            this.dayMask = dayMask;
+        }
+
+        static Group valueOf(String serialized) throws IllegalArgumentException {
+            int dayPart = serialized.indexOf(':');
+
+            if (dayPart == -1)
+                throw new IllegalArgumentException("Trying to parse from wrong format: " + serialized);
+
+            int dayMask;
+            String[] spans;
+            try {
+                dayMask = Integer.parseInt(serialized.substring(0, dayPart));
+                spans = serialized.substring(dayPart + 1).split(",");
+
+                if (dayMask < 0 || dayMask > EVERYDAY)
+                    throw new IllegalArgumentException("Invalid day mask");
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(e);
+            } catch (StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(e);
+            }
+
+            Group result = new Group(dayMask);
+
+            for (String span : spans) {
+                result.storage.add(Span.valueOf(span));
+            }
+
+            return result;
+        }
+
+        int minutesTillBecomeAvailable(Calendar cal) {
+            int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+            int myDays = (dayMask | (dayMask << 7)) >> dayOfWeek;
+            int daysCount = -1;
+
+            if (isToday(cal)) {
+                if (isActual(cal))
+                    return 0;
+                else {
+                    int minSpanDelta = Integer.MAX_VALUE;
+                    for (Span span : storage) {
+                        int tillThis = span.minutesTillBecomeActual(cal);
+                        if (tillThis > 0 && minSpanDelta > tillThis)
+                            minSpanDelta = tillThis;
+                    }
+                    if (minSpanDelta != Integer.MAX_VALUE) // no any
+                        return minSpanDelta;
+                }
+            }
+
+            for (int i = 0; i < 7; i++) {
+                if ((myDays & (1 << i)) != 0) {
+                    daysCount = (i + 1) * 1440;
+                    break;
+                }
+            }
+
+            if (daysCount == -1) {
+                throw new IllegalStateException("Wrong time span state");
+            }
+
+            return daysCount + storage.first().timeFrom - Span.getCurrentMinutes(cal);
+        }
+
+        boolean isToday(Calendar cal) {
+            int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+            return (((1 << (dayOfWeek - 1)) & dayMask) != 0);
+        }
+
+        boolean isActual(Calendar cal) {
+            if (isToday(cal)) {
+                for (Span span : storage)
+                    if (span.isActual(cal))
+                        return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of mutable bitmaps keyed by size and config, used by DrawLayer.
+ * A bitmap of the exact size and config is reused as is. On API 19+ a larger pooled bitmap
+ * is reconfigured to the requested size instead of allocating a new one.
+ * Released bitmaps exceeding the pool byte limit are recycled.
+ */
+public final class BitmapPool {
+
+    private static final int SDK_KITKAT = 19;
+    private static final BitmapPool shared = new BitmapPool(8 * 1024 * 1024);
+
+    // Bitmap.reconfigure and getAllocationByteCount are API 19, the library builds against API 14
+    private static Method reconfigure, getAllocationByteCount;
+
+    static {
+        if (Build.VERSION.SDK_INT >= SDK_KITKAT) {
+            try {
+                reconfigure = Bitmap.class.getMethod("reconfigure", int.class, int.class, Bitmap.Config.class);
+                getAllocationByteCount = Bitmap.class.getMethod("getAllocationByteCount");
+            } catch (NoSuchMethodException e) {
+                reconfigure = null;
+            }
+        }
+    }
+
+    private final int maxBytes;
+    private final Map<Key, List<Bitmap>> pool = new HashMap<Key, List<Bitmap>>();
+    // Lookups reuse this key, so acquire and release of a known size allocate nothing
+    private final Key probe = new Key();
+    private int pooledBytes;
+    private long hits, misses, allocatedBytes;
+
+    /**
+     * @param maxBytes maximum total size of pooled bitmaps
+     */
+    public BitmapPool(int maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Pool size must not be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    public static BitmapPool getShared() {
+        return shared;
+    }
+
+    /**
+     * @return erased mutable bitmap of the given size and config
+     */
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        List<Bitmap> exact = pool.get(probe.set(width, height, config));
+        if (exact != null && !exact.isEmpty()) {
+            Bitmap bitmap = exact.remove(exact.size() - 1);
+            pooledBytes -= byteCount(bitmap);
+            hits++;
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+
+        if (reconfigure != null) {
+            Bitmap bitmap = takeReconfigurable(width, height, config);
+            if (bitmap != null) {
+                hits++;
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+
+        misses++;
+        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        allocatedBytes += byteCount(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Returns bitmap to the pool. The caller must not use it afterwards
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled())
+            return;
+        int size = byteCount(bitmap);
+        if (!bitmap.isMutable() || pooledBytes + size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        List<Bitmap> bucket = pool.get(probe.set(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()));
+        if (bucket == null) {
+            bucket = new ArrayList<Bitmap>();
+            pool.put(new Key().set(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()), bucket);
+        }
+        bucket.add(bitmap);
+        pooledBytes += size;
+    }
+
+    /**
+     * Recycles all pooled bitmaps
+     */
+    public synchronized void clear() {
+        for (List<Bitmap> bucket : pool.values())
+            for (Bitmap bitmap : bucket)
+                bitmap.recycle();
+        pool.clear();
+        pooledBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return total size of bitmaps allocated by this pool
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return total size of bitmaps currently waiting in the pool
+     */
+    public synchronized int getPooledBytes() {
+        return pooledBytes;
+    }
+
+    private Bitmap takeReconfigurable(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+        for (List<Bitmap> bucket : pool.values()) {
+            for (Iterator<Bitmap> i = bucket.iterator(); i.hasNext(); ) {
+                Bitmap bitmap = i.next();
+                if (byteCount(bitmap) >= needed) {
+                    int size = byteCount(bitmap);
+                    try {
+                        reconfigure.invoke(bitmap, width, height, config);
+                    } catch (Exception e) {
+                        continue;
+                    }
+                    i.remove();
+                    pooledBytes -= size;
+                    return bitmap;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return memory held by the bitmap, which may exceed its current size after reconfigure
+     */
+    private static int byteCount(Bitmap bitmap) {
+        if (getAllocationByteCount != null) {
+            try {
+                return (Integer) getAllocationByteCount.invoke(bitmap);
+            } catch (Exception e) {
+                // fall through to the size of the pixels in use
+            }
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case ARGB_8888:
+                return 4;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Bucket key. Keys stored in the map are never changed, only the probe is
+     */
+    private static final class Key {
+        int width, height;
+        Bitmap.Config config;
+
+        Key set(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return width == other.width && height == other.height && config == other.config;
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + (config == null ? 0 : config.ordinal());
+        }
+    }
+}
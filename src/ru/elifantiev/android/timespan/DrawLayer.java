@@ -19,9 +19,19 @@ package ru.elifantiev.android.timespan;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
 
+/**
+ * Offscreen bitmap with a cached Canvas. Bitmaps come from and return to the shared BitmapPool.
+ * A released layer remembers its size and takes a bitmap again on the next use.
+ */
 class DrawLayer {
+    private final BitmapPool pool = BitmapPool.getShared();
+    private Canvas canvas;
     private Bitmap bitmap;
+    private int width, height;
+    private Bitmap.Config config;
 
     DrawLayer() {
     }
@@ -33,23 +43,66 @@ class DrawLayer {
     }
 
     public void onSizeChange(int width, int height) {
-        if (bitmap != null) {
-            bitmap.recycle();
+        onSizeChange(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    public void onSizeChange(int width, int height, Bitmap.Config config) {
+        this.width = width;
+        this.height = height;
+        this.config = config;
+        if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+            reset();
+            return;
         }
-        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        pool.release(bitmap);
+        bitmap = null;
+        acquire();
+    }
+
+    /**
+     * Takes a bitmap again after release(), at the last requested size
+     * @return true if the layer was empty and its content must be drawn again
+     */
+    public boolean restore() {
+        if (bitmap != null || config == null)
+            return false;
+        acquire();
+        return true;
     }
 
+    /**
+     * @return canvas of the layer, null if the size was never set
+     */
     public Canvas getCanvas() {
-        return new Canvas(bitmap);
+        restore();
+        return canvas;
+    }
+
+    private void acquire() {
+        bitmap = pool.acquire(width, height, config);
+        if (canvas == null)
+            canvas = new Canvas(bitmap);
+        else
+            canvas.setBitmap(bitmap);
     }
 
     public void drawOn(Canvas canvas, float x, float y) {
-        canvas.drawBitmap(bitmap, x, y, null);
+        if (bitmap != null)
+            canvas.drawBitmap(bitmap, x, y, null);
+    }
+
+    /**
+     * Draws a part of the layer. ALPHA_8 layers are drawn in the paint color
+     */
+    public void drawOn(Canvas canvas, Rect src, Rect dst, Paint paint) {
+        if (bitmap != null)
+            canvas.drawBitmap(bitmap, src, dst, paint);
     }
 
     public void release() {
-        if (bitmap != null) {
-            bitmap.recycle();
-        }
+        pool.release(bitmap);
+        bitmap = null;
+        // The pooled bitmap may go to another layer, do not keep drawing into it
+        canvas = null;
     }
 }
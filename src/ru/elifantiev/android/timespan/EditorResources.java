@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Paint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of editor bitmaps, paints and metrics, one set per screen density.
+ * Spans and day selectors created by the editor take them from here instead of decoding
+ * resources on the UI thread. Shared paints must not be modified.
+ */
+public final class EditorResources {
+
+    private static final Map<Float, EditorResources> cache = new HashMap<Float, EditorResources>();
+
+    final DrawParameters drawParameters;
+    final Bitmap upArrow, downArrow;
+    final Bitmap checkOn, checkOff;
+    final Paint spanText;
+    final Paint dayText, grayedDayText;
+
+    private EditorResources(Context ctx) {
+        Resources resources = ctx.getResources();
+        drawParameters = new DrawParameters(ctx);
+        float density = drawParameters.density;
+
+        upArrow = BitmapFactory.decodeResource(resources, android.R.drawable.arrow_up_float);
+        downArrow = BitmapFactory.decodeResource(resources, android.R.drawable.arrow_down_float);
+        checkOn = BitmapFactory.decodeResource(resources, android.R.drawable.checkbox_on_background);
+        checkOff = BitmapFactory.decodeResource(resources, android.R.drawable.checkbox_off_background);
+
+        spanText = new Paint();
+        spanText.setStyle(Paint.Style.FILL_AND_STROKE);
+        spanText.setTextSize(20 * density);
+        spanText.setColor(0xFFFFFFFF);
+        spanText.setAntiAlias(true);
+        spanText.setTextAlign(Paint.Align.CENTER);
+
+        dayText = new Paint();
+        dayText.setStrokeWidth(1);
+        dayText.setTextAlign(Paint.Align.CENTER);
+        dayText.setTextSize(15 * density);
+        dayText.setAntiAlias(true);
+        dayText.setColor(0xFFFFFFFF);
+        dayText.setStyle(Paint.Style.FILL_AND_STROKE);
+
+        grayedDayText = new Paint(dayText);
+        grayedDayText.setColor(0xFF444444);
+    }
+
+    static synchronized EditorResources get(Context ctx) {
+        Float density = ctx.getResources().getDisplayMetrics().density;
+        EditorResources result = cache.get(density);
+        if (result == null) {
+            // Application context, so cached entries do not keep an activity alive
+            result = new EditorResources(ctx.getApplicationContext());
+            cache.put(density, result);
+        }
+        return result;
+    }
+
+    /**
+     * Drops cached entries and empties the layer bitmap pool. Cached bitmaps are not recycled
+     * as views on screen may still draw them, they are collected once those views are gone.
+     */
+    public static synchronized void release() {
+        cache.clear();
+        BitmapPool.getShared().clear();
+    }
+
+    /**
+     * Call from Application or Activity onTrimMemory (API 14+), onLowMemory on older systems.
+     * While the UI is visible only idle pooled bitmaps are dropped, as the editor on screen
+     * would have to decode and allocate everything again on the next draw.
+     * @param level trim level passed to onTrimMemory
+     */
+    public static void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+            release();
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            BitmapPool.getShared().clear();
+    }
+}
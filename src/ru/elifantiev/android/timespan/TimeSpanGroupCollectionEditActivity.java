@@ -146,7 +146,7 @@ public class TimeSpanGroupCollectionEditActivity extends ListActivity {
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
             View v = super.getView(position, convertView, parent);
-            ((TextView)v).setText(this.getItem(position).toReadableString(getContext()));
+            ((TextView)v).setText(TimeSpanGroupFormatter.toReadableString(this.getItem(position), getContext()));
             return v;
         }
     }
@@ -21,6 +21,7 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 import android.widget.Toast;
 
@@ -68,6 +69,20 @@ public class TimeSpanGroupEditActivity extends Activity {
             finish();
     }
 
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        EditorResources.release();
+    }
+
+    // Called on API 14+ only, the library builds against API 14 and runs on API 7+
+    @Override
+    public void onTrimMemory(int level) {
+        if (Build.VERSION.SDK_INT >= 14)
+            super.onTrimMemory(level);
+        EditorResources.onTrimMemory(level);
+    }
+
     @Override
     protected Dialog onCreateDialog(int id) {
         Dialog dialog = null;
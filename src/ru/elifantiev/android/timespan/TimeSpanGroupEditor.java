@@ -17,6 +17,7 @@
 package ru.elifantiev.android.timespan;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -31,6 +32,8 @@ import ru.elifantiev.android.timespan.gestures.ScaleGestureDetectorWrapper;
 import ru.elifantiev.android.timespan.gestures.SimpliestScaleListener;
 import ru.elifantiev.android.timespan.gestures.impl.ScaleDetectorFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -48,10 +51,21 @@ public class TimeSpanGroupEditor extends View implements
     private GestureDetector gestureDetector;
     private ScaleGestureDetectorWrapper scaleGestureDetector;
 
-    private final DrawLayer scale = new DrawLayer();
-    private Paint pOuter, pLine, pLabelText;
+    // Hardware accelerated canvases do not draw bitmaps larger than the GPU texture,
+    // which is 2048 pixels on many devices
+    private static final int MAX_STRIP_HEIGHT = 2048;
+
+    // Whole day scale at the current zoom in strips of MAX_STRIP_HEIGHT rows,
+    // scrolling only moves the visible window over it
+    private DrawLayer[] scale = new DrawLayer[0];
+    private int scaleHeight;
+    private final Rect scaleWindow = new Rect(), stripBounds = new Rect(), stripDrawBounds = new Rect();
+    private Paint pOuter, pLine, pLabelText, pScale;
     private Rect boundaries;
     private final Rect charBounds = new Rect();
+    // Old and new screen areas of a changed span or day box, and the clip of the current draw
+    private final Rect dirtyBounds = new Rect(), changedBounds = new Rect();
+    private final Rect clipBounds = new Rect(), drawBounds = new Rect();
 
     private TreeSet<VisualTimeSpan> displayedSpans = new TreeSet<VisualTimeSpan>();
     private Set<String> labelsAtTop = new TreeSet<String>();
@@ -96,7 +110,7 @@ public class TimeSpanGroupEditor extends View implements
             }
         });
 
-        drawParameters = new DrawParameters(getContext());
+        drawParameters = EditorResources.get(getContext()).drawParameters;
 
         pOuter = new Paint();
         pOuter.setColor(Color.GRAY);
@@ -110,6 +124,9 @@ public class TimeSpanGroupEditor extends View implements
         pLine.setAntiAlias(true);
         pLine.setStyle(Paint.Style.FILL_AND_STROKE);
 
+        pScale = new Paint();
+        pScale.setColor(pLine.getColor());
+
         pLabelText = new Paint(pLine);
         pLabelText.setTextAlign(Paint.Align.RIGHT);
         pLabelText.setColor(Color.WHITE);
@@ -130,8 +147,6 @@ public class TimeSpanGroupEditor extends View implements
             desiredValue = (desiredValue / 5 + (desiredValue % 5 > 3 ? 1 : 0)) * 5;
             viewportTop = desiredValue;
             recalcOutLabels(true);
-            scale.reset();
-            drawScale();
             invalidate();
         }
     }
@@ -167,14 +182,13 @@ public class TimeSpanGroupEditor extends View implements
         newScale = Math.max(6, Math.min(newScale, 24));
         if(hoursOnScreen != newScale) {
             hoursOnScreen = newScale;
+            drawScale();
 
             int d = 24 - (viewportTop / 60 + (viewportTop % 60 > 0 ? 1: 0) + hoursOnScreen);
             if(d < 0) {
                 changeViewport(d * 60);
             } else {
                 recalcOutLabels(true);
-                scale.reset();
-                drawScale();
                 invalidate();
             }
         }
@@ -206,14 +220,11 @@ public class TimeSpanGroupEditor extends View implements
                 w - getPaddingRight() - SIDE_PAD * 2 - drawParameters.DAY_SELECTOR_AREA_WIDTH,
                 h - getPaddingBottom() - drawParameters.TB_PAD);
 
-        scale.onSizeChange(boundaries.width(), boundaries.height());
-
-
         if (displayedSpans.size() == 0)
             appendSpan(VisualTimeSpan.newInstance(this));
 
         for (VisualTimeSpan span : displayedSpans)
-            span.onSizeChanged(w, h, boundaries);
+            span.onSizeChanged(boundaries);
 
         recalcOutLabels(false);
         drawScale();
@@ -228,38 +239,102 @@ public class TimeSpanGroupEditor extends View implements
         super.onSizeChanged(w, h, oldw, oldh);
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        for (DrawLayer strip : scale)
+            strip.release();
+        daysSelector.release();
+        super.onDetachedFromWindow();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
-        scale.drawOn(canvas, boundaries.left, boundaries.top);
+        if (!canvas.getClipBounds(clipBounds))
+            return;
+
+        // Layers are returned to the pool on detach and taken again on the first draw
+        boolean restored = false;
+        for (DrawLayer strip : scale)
+            restored |= strip.restore();
+        if (restored)
+            drawScale();
+
+        if (drawBounds.setIntersect(clipBounds, boundaries)) {
+            // Frame and labels are clipped to the scale area, the way the former scale layer did
+            canvas.save();
+            canvas.clipRect(boundaries);
+            canvas.drawRect(boundaries, pOuter);
+
+            // Only the part of the ribbon under the clip is copied
+            int windowTop = Math.round(viewportTop * pixelsPerMinute());
+            for (int i = 0; i < scale.length; i++) {
+                int stripTop = boundaries.top - windowTop + i * MAX_STRIP_HEIGHT;
+                stripBounds.set(boundaries.left, stripTop, boundaries.right,
+                        stripTop + Math.min(MAX_STRIP_HEIGHT, scaleHeight - i * MAX_STRIP_HEIGHT));
+                if (stripDrawBounds.setIntersect(drawBounds, stripBounds)) {
+                    scaleWindow.set(stripDrawBounds);
+                    scaleWindow.offset(-boundaries.left, -stripTop);
+                    scale[i].drawOn(canvas, scaleWindow, stripDrawBounds, pScale);
+                }
+            }
+            drawOutLabels(canvas);
+            canvas.restore();
+        }
+
         daysSelector.onDraw(canvas);
         for (VisualTimeSpan span : displayedSpans)
             span.onDraw(canvas);
     }
 
+    /**
+     * Renders hour lines and labels of the whole day at the current zoom. Lines and labels
+     * are of a single color, so the ribbon is ALPHA_8 and takes as much memory as one
+     * full color layer of the scale area at the highest zoom. At high zoom the ribbon
+     * is taller than a texture may be, so it is split into strips.
+     */
     private void drawScale() {
-        Canvas canvas = scale.getCanvas();
-        canvas.drawRect(0, 0, boundaries.width(), boundaries.height(), pOuter);
-
-        int extraMin = (60 - (viewportTop % 60)) % 60;
-        float offsetTop = minuteToPixelPoint(viewportTop + extraMin);
-        float heightHours = boundaries.height() / hoursOnScreen;
-        int firstLabelIndex = viewportTop / 60 + (extraMin > 0 ? 1 : 0);
+        float pixelsPerMinute = pixelsPerMinute();
+        // One extra row for rounding of the window top
+        scaleHeight = (int) Math.ceil(1440 * pixelsPerMinute) + 1;
+        int stripCount = (scaleHeight + MAX_STRIP_HEIGHT - 1) / MAX_STRIP_HEIGHT;
+        if (stripCount != scale.length) {
+            for (int i = stripCount; i < scale.length; i++)
+                scale[i].release();
+            DrawLayer[] strips = new DrawLayer[stripCount];
+            System.arraycopy(scale, 0, strips, 0, Math.min(stripCount, scale.length));
+            for (int i = scale.length; i < stripCount; i++)
+                strips[i] = new DrawLayer();
+            scale = strips;
+        }
 
-        for (int i = 0; i < hoursOnScreen; i++) {
-            float offsetY = offsetTop +  heightHours * i;
-            canvas.drawLine(0, offsetY, boundaries.width(), offsetY, pLine);
-            canvas.drawText(
-                    labels[firstLabelIndex + i],
-                    10,
-                    offsetY + drawParameters.SCALE_LABEL_TOP_PADDING,
-                    pLine);
+        for (int s = 0; s < stripCount; s++) {
+            int stripTop = s * MAX_STRIP_HEIGHT;
+            scale[s].onSizeChange(boundaries.width(), Math.min(MAX_STRIP_HEIGHT, scaleHeight - stripTop), Bitmap.Config.ALPHA_8);
+            Canvas canvas = scale[s].getCanvas();
+            canvas.save();
+            canvas.translate(0, -stripTop);
+            for (int i = 0; i < 24; i++) {
+                float offsetY = i * 60 * pixelsPerMinute;
+                canvas.drawLine(0, offsetY, boundaries.width(), offsetY, pLine);
+                canvas.drawText(
+                        labels[i],
+                        10,
+                        offsetY + drawParameters.SCALE_LABEL_TOP_PADDING,
+                        pLine);
+            }
+            canvas.restore();
         }
+    }
 
+    /**
+     * Labels of the spans above and below the viewport
+     */
+    private void drawOutLabels(Canvas canvas) {
         int i = 0;
         for(String label : labelsAtTop) {
             canvas.drawText(label,
-                    boundaries.width() - drawParameters.SCALE_LABEL_TOP_PADDING,
-                    drawParameters.SCALE_LABEL_TOP_PADDING + i * charBounds.height(),
+                    boundaries.right - drawParameters.SCALE_LABEL_TOP_PADDING,
+                    boundaries.top + drawParameters.SCALE_LABEL_TOP_PADDING + i * charBounds.height(),
                     pLabelText);
             i++;
         }
@@ -269,13 +344,17 @@ public class TimeSpanGroupEditor extends View implements
         for(String label : labelsAtBottom) {
             canvas.drawText(
                     label,
-                    boundaries.width() - drawParameters.SCALE_LABEL_TOP_PADDING,
-                    boundaries.height() - drawParameters.SCALE_LABEL_TOP_PADDING - (colSize - i) * charBounds.height(),
+                    boundaries.right - drawParameters.SCALE_LABEL_TOP_PADDING,
+                    boundaries.bottom - drawParameters.SCALE_LABEL_TOP_PADDING - (colSize - i) * charBounds.height(),
                     pLabelText);
             i++;
         }
     }
 
+    private float pixelsPerMinute() {
+        return (float) boundaries.height() / (hoursOnScreen * 60);
+    }
+
     public boolean onDown(MotionEvent motionEvent) {
         activeSpan = null;
         activeSpanMode = VisualTimeSpan.HitTestResult.NOWHERE;
@@ -301,8 +380,8 @@ public class TimeSpanGroupEditor extends View implements
     }
 
     public boolean onSingleTapUp(MotionEvent motionEvent) {
-        if (daysSelector.handleTap(motionEvent)) {
-            invalidate();
+        if (daysSelector.handleTap(motionEvent, dirtyBounds)) {
+            invalidate(dirtyBounds);
             return true;
         }
         return false;
@@ -343,8 +422,9 @@ public class TimeSpanGroupEditor extends View implements
 
 
         if (alter) {
+            beginSpanChange(activeSpan);
             activeSpan.setBounds(selectionTop, selectionBottom);
-            invalidate();
+            endSpanChange(activeSpan);
         }
 
         return alter;
@@ -352,12 +432,27 @@ public class TimeSpanGroupEditor extends View implements
 
     public void onLongPress(MotionEvent motionEvent) {
         if (activeSpan != null) {
+            beginSpanChange(activeSpan);
             activeSpan.toggleEditMode();
+            endSpanChange(activeSpan);
             activeSpan = null;
-            invalidate();
         }
     }
 
+    private void beginSpanChange(VisualTimeSpan span) {
+        span.getDirtyBounds(dirtyBounds);
+    }
+
+    /**
+     * Invalidates the union of the span areas before and after the change
+     */
+    private void endSpanChange(VisualTimeSpan span) {
+        span.getDirtyBounds(changedBounds);
+        dirtyBounds.union(changedBounds);
+        if (!dirtyBounds.isEmpty())
+            invalidate(dirtyBounds);
+    }
+
     public boolean onFling(MotionEvent motionEvent, MotionEvent motionEvent1, float v, float v1) {
         return false;
     }
@@ -409,14 +504,11 @@ public class TimeSpanGroupEditor extends View implements
     private void appendSpan(VisualTimeSpan newOne) {
         displayedSpans.add(newOne);
         if (isMeasured)
-            newOne.onSizeChanged(getMeasuredWidth(), getMeasuredHeight(), boundaries);
+            newOne.onSizeChanged(boundaries);
     }
 
     private void removeSpan(VisualTimeSpan span) {
-        if(displayedSpans.contains(span)) {
-            span.release();
-            displayedSpans.remove(span);
-        }
+        displayedSpans.remove(span);
     }
 
     public void setAvailableDays(int dayMask) {
@@ -427,11 +519,9 @@ public class TimeSpanGroupEditor extends View implements
         if(group == null)
             throw new IllegalArgumentException("Null group specified");
 
-        for(VisualTimeSpan span : displayedSpans)
-            span.release();
         displayedSpans.clear();
         daysSelector.setSelectedDays(group.getDayMask());
-        for (TimeSpan span : group.getCollection()) {
+        for (TimeSpan span : group.getSpans()) {
             appendSpan(VisualTimeSpan.fromSpan(this, span));
         }
         recalcOutLabels(false);
@@ -440,9 +530,12 @@ public class TimeSpanGroupEditor extends View implements
 
     public TimeSpanGroup getValue() {
         int days = daysSelector.getSelectedDays();
+        List<TimeSpan> spans = new ArrayList<TimeSpan>(displayedSpans.size());
+        for (VisualTimeSpan span : displayedSpans)
+            spans.add(span.toTimeSpan());
         TimeSpanGroup result;
         try {
-            result = TimeSpanGroup.fromVisualSpanCollection(days, displayedSpans);
+            result = TimeSpanGroup.fromSpanCollection(days, spans);
         } catch (IllegalArgumentException e) {
             Log.e("TimeSpanGroupEditor", "WTF??? Invalid day mask from VisualDaysSelector!");
             result = TimeSpanGroup.emptyEverydayGroup();
@@ -482,17 +575,20 @@ public class TimeSpanGroupEditor extends View implements
             for (VisualTimeSpan span : displayedSpans) {
                 if (span.hitTest(motionEvent) == VisualTimeSpan.HitTestResult.JUST_IN) {
                     if (displayedSpans.size() > 1 && span.isEditMode()) {
+                        beginSpanChange(span);
                         displayedSpans.remove(span);
                         recalcOutLabels(false);
-                        invalidate();
+                        invalidate(dirtyBounds);
                     }
                     return true;
                 }
             }
 
             float minutesTapped = pixelPointToMinutes(screenToControl(motionEvent.getY()));
-            appendSpan(VisualTimeSpan.newInstanceAtValues(this, minutesTapped - 90, minutesTapped + 90));
-            invalidate();
+            VisualTimeSpan span = VisualTimeSpan.newInstanceAtValues(this, minutesTapped - 90, minutesTapped + 90);
+            appendSpan(span);
+            span.getDirtyBounds(dirtyBounds);
+            invalidate(dirtyBounds);
             return true;
         }
 
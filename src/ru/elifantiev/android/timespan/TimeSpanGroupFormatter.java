@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011 Oleg Elifantiev
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package ru.elifantiev.android.timespan;
+
+
+import android.content.Context;
+import android.content.res.Resources;
+
+/**
+ * Human readable, localized representation of groups.
+ * Kept apart from TimeSpanGroup so the model does not depend on Android.
+ */
+public final class TimeSpanGroupFormatter {
+
+    private TimeSpanGroupFormatter() {
+    }
+
+    public static String toReadableString(TimeSpanGroup group, Context ctx) {
+        int dayMask = group.getDayMask();
+        StringBuilder builder = new StringBuilder();
+        Resources resources = ctx.getResources();
+        String[] dayLabels = resources.getStringArray(R.array.day_labels);
+        boolean isFirst = true;
+        if (dayMask == TimeSpanGroup.EVERYDAY)
+            builder.append(resources.getString(R.string.everyday));
+        else if (dayMask == 65)
+            builder.append(resources.getString(R.string.weekend));
+        else if (dayMask == 62)
+            builder.append(resources.getString(R.string.weekdays));
+        else {
+            for (int i = 0; i < 7; i++) {
+                int d1 = dayMask & (1 << i);
+                if (d1 != 0) {
+                    if (!isFirst)
+                        builder.append(", ");
+                    else
+                        isFirst = false;
+                    builder.append(dayLabels[i]);
+                }
+            }
+        }
+        builder.append(": ");
+        isFirst = true;
+        for (TimeSpan span : group.getSpans()) {
+            if (isFirst)
+                isFirst = false;
+            else
+                builder.append(", ");
+            builder.append(span.toReadableString());
+        }
+        return builder.toString();
+    }
+}
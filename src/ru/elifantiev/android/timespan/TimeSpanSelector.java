@@ -89,7 +89,7 @@ public class TimeSpanSelector extends TextView {
         if(groups.size() > 0) {
             StringBuilder result = new StringBuilder();
             for (TimeSpanGroup group : groups)
-                result.append(group.toReadableString(getContext())).append("; ");
+                result.append(TimeSpanGroupFormatter.toReadableString(group, getContext())).append("; ");
             setText(result.toString());
         }
         else
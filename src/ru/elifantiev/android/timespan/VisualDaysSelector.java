@@ -43,23 +43,15 @@ class VisualDaysSelector {
         if(labels.length != 7)
             throw new IllegalArgumentException("Invalid labels array specified in library resources");
 
-        DrawParameters drawParameters = new DrawParameters(ctx);
+        EditorResources resources = EditorResources.get(ctx);
 
-        pText = new Paint();
-        pText.setStrokeWidth(1);
-        pText.setTextAlign(Paint.Align.CENTER);
-        pText.setTextSize(15 * drawParameters.density);
-        pText.setAntiAlias(true);
-        pText.setColor(0xFFFFFFFF);
-        pText.setStyle(Paint.Style.FILL_AND_STROKE);
-
-        pGrayedText = new Paint(pText);
-        pGrayedText.setColor(0xFF444444);
+        pText = resources.dayText;
+        pGrayedText = resources.grayedDayText;
 
         weekStart = ctx.getResources().getInteger(ru.elifantiev.android.timespan.R.integer.weekStartOffset);
 
-        checkOn = BitmapFactory.decodeResource(ctx.getResources(), android.R.drawable.checkbox_on_background);
-        checkOff = BitmapFactory.decodeResource(ctx.getResources(), android.R.drawable.checkbox_off_background);
+        checkOn = resources.checkOn;
+        checkOff = resources.checkOff;
 
         checkDimensions = new Rect(0, 0, checkOff.getWidth(), checkOff.getHeight());
     }
@@ -69,7 +61,11 @@ class VisualDaysSelector {
     }
 
     public void onDraw(Canvas canvas) {
-        days.drawOn(canvas, boundaries.left, boundaries.top);
+        if (!canvas.quickReject(boundaries.left, boundaries.top, boundaries.right, boundaries.bottom, Canvas.EdgeType.BW)) {
+            if (days.restore())
+                drawDays();
+            days.drawOn(canvas, boundaries.left, boundaries.top);
+        }
     }
 
     void onSizeChanged(Rect boundaries) {
@@ -130,17 +126,31 @@ class VisualDaysSelector {
         return -1;
     }
 
-    boolean handleTap(MotionEvent event) {
+    /**
+     * @param dirty receives the screen area of the toggled day box
+     */
+    boolean handleTap(MotionEvent event, Rect dirty) {
         int what = hitTest(event);
         if(what >= 0 &&  ((1 << what) & availMask) > 0) {
             selected ^= (1 << what);
             drawDays();
+            getBoxBounds((what - weekStart + 7) % 7, dirty);
             return true;
         }
 
         return false;
     }
 
+    private void getBoxBounds(int box, Rect out) {
+        Rect dayBox = dayBoxes[box];
+        out.set(dayBox);
+        out.union(checkSizes[box]);
+        // Label baseline is below the box center, the descent may leave the box
+        out.union(dayBox.left, dayBox.centerY(),
+                dayBox.right, dayBox.centerY() + (int) Math.ceil(pText.getTextSize() + pText.descent()));
+        out.offset(boundaries.left, boundaries.top);
+    }
+
     void setSelectedDays(int days) {
         selected = days;
     }
@@ -17,7 +17,6 @@
 package ru.elifantiev.android.timespan;
 
 
-import android.R;
 import android.graphics.*;
 import android.view.MotionEvent;
 
@@ -25,21 +24,22 @@ import static ru.elifantiev.android.timespan.DrawParameters.KNOB_TOUCH_AREA;
 
 class VisualTimeSpan implements Comparable<VisualTimeSpan> {
 
-    private final DrawLayer fullCanvas = new DrawLayer();
-    private final DrawLayer scaleArea = new DrawLayer();
     private final static Paint pSelectionBoundary = initBoundaryPaint(false);
     private final static Paint pSelectionBoundaryEdit = initBoundaryPaint(true);
     private final static Paint pSelection = initInnerPaint();
     private final static Paint pSelKnob = initKnobPaint();
-    private final Paint pSpanText;
     private final TimeSpanGroupEditor parent;
     private final float strokeWidth;
     private final Bitmap upArrow, downArrow;
+    private final Paint pSpanText;
 
     private float xMiddlePoint;
     private boolean editMode = false;
     private RectF topKnobBoundary, bottomKnobBoundary, middleArea;
     private Rect boundaries, spanCaptionBounds = new Rect();
+    private final RectF selectionRect = new RectF();
+    private final Rect drawBounds = new Rect(), arrowBounds = new Rect();
+    private String caption;
 
     private float pixelTop, pixelBottom;
 
@@ -67,31 +67,22 @@ class VisualTimeSpan implements Comparable<VisualTimeSpan> {
         return r;
     }
 
-    private Paint initTextPaint(float density) {
-        Paint r = new Paint();
-        r.setStyle(Paint.Style.FILL_AND_STROKE);
-        r.setTextSize(20 * density);
-        r.setColor(0xFFFFFFFF);
-        r.setAntiAlias(true);
-        r.setTextAlign(Paint.Align.CENTER);
-        return r;
-    }
-
     TimeSpan toTimeSpan() {
         return new TimeSpan(minutesTop, minutesBottom);
     }
 
     private VisualTimeSpan(TimeSpanGroupEditor parent) {
 
-        pSpanText = initTextPaint(parent.drawParameters.density);
+        EditorResources resources = EditorResources.get(parent.getContext());
+        pSpanText = resources.spanText;
 
         this.parent = parent;
 
         pSpanText.getTextBounds("0", 0, 1, spanCaptionBounds);
         strokeWidth = pSelectionBoundary.getStrokeWidth();
 
-        upArrow = BitmapFactory.decodeResource(parent.getContext().getResources(), R.drawable.arrow_up_float);
-        downArrow = BitmapFactory.decodeResource(parent.getContext().getResources(), R.drawable.arrow_down_float);
+        upArrow = resources.upArrow;
+        downArrow = resources.downArrow;
     }
 
     static VisualTimeSpan newInstance(TimeSpanGroupEditor parent) {
@@ -143,30 +134,55 @@ class VisualTimeSpan implements Comparable<VisualTimeSpan> {
 
     void invalidate() {
         recalcBoundaries();
-        drawSelection();
     }
 
-    void release() {
-        fullCanvas.release();
-        scaleArea.release();
-    }
-
-    void onSizeChanged(int totalW, int totalH, Rect boundaries) {
+    void onSizeChanged(Rect boundaries) {
         this.boundaries = boundaries;
 
         xMiddlePoint = boundaries.width() / 2;
 
-        fullCanvas.onSizeChange(totalW, totalH);
-        scaleArea.onSizeChange(boundaries.width(), boundaries.height());
         recalcBoundaries();
-        drawSelection();
     }
 
+    /**
+     * Spans are drawn straight into the view canvas, so a span holds no bitmaps of its own
+     */
     void onDraw(Canvas canvas) {
-        if (parent.isSpanVisible(this)) {
-            if (editMode)
-                fullCanvas.drawOn(canvas, 0, 0);
-            scaleArea.drawOn(canvas, boundaries.left, boundaries.top);
+        getDirtyBounds(drawBounds);
+        if (!drawBounds.isEmpty() &&
+                !canvas.quickReject(drawBounds.left, drawBounds.top, drawBounds.right, drawBounds.bottom, Canvas.EdgeType.AA))
+            drawSelection(canvas);
+    }
+
+    /**
+     * Screen area the span is drawn in, arrows of the edit mode included. Empty when the span
+     * is out of the viewport.
+     */
+    void getDirtyBounds(Rect out) {
+        if (boundaries == null || !parent.isSpanVisible(this)) {
+            out.setEmpty();
+            return;
+        }
+
+        out.set(boundaries.left,
+                boundaries.top + (int) Math.floor(pixelTop - strokeWidth),
+                boundaries.right,
+                boundaries.top + (int) Math.ceil(pixelBottom + strokeWidth));
+        if (!out.intersect(boundaries))
+            out.setEmpty();
+
+        if (editMode) {
+            float arrowTop = parent.controlToScreen(pixelTop) - upArrow.getHeight();
+            int arrowLeft = (int) Math.floor(xMiddlePoint - upArrow.getWidth() / 2);
+            arrowBounds.set(arrowLeft, (int) Math.floor(arrowTop),
+                    arrowLeft + upArrow.getWidth() + 1, (int) Math.ceil(arrowTop + upArrow.getHeight()));
+            out.union(arrowBounds);
+
+            float arrowBottom = parent.controlToScreen(pixelBottom);
+            arrowLeft = (int) Math.floor(xMiddlePoint - downArrow.getWidth() / 2);
+            arrowBounds.set(arrowLeft, (int) Math.floor(arrowBottom),
+                    arrowLeft + downArrow.getWidth() + 1, (int) Math.ceil(arrowBottom + downArrow.getHeight()));
+            out.union(arrowBounds);
         }
     }
 
@@ -189,57 +205,41 @@ class VisualTimeSpan implements Comparable<VisualTimeSpan> {
 
         middleArea = new RectF(boundaries.left, Math.max(0, pixelTop),
                 boundaries.right, Math.min(boundaries.height(), pixelBottom));
+
+        int minutesSelected = minutesBottom - minutesTop;
+        caption = new StringBuilder()
+                .append(toString())
+                .append(" (")
+                .append(minutesSelected / 60)
+                .append("h ")
+                .append(minutesSelected % 60)
+                .append("m)").toString();
     }
 
-    private void drawSelection() {
-        fullCanvas.reset();
-        scaleArea.reset();
-
-        if(parent.isSpanVisible(this)) {
-
-            int minutesSelected = minutesBottom - minutesTop;
-
-            Canvas sCanvas = scaleArea.getCanvas();
-            sCanvas.drawRoundRect(
-                    new RectF(
-                            0,
-                            pixelTop,
-                            boundaries.width(),
-                            pixelBottom),
-                    10f,
-                    10f,
-                    editMode ? pSelectionBoundaryEdit : pSelectionBoundary);
-
-
-            sCanvas.drawRoundRect(
-                    new RectF(
-                            0 + strokeWidth,
-                            pixelTop + strokeWidth,
-                            boundaries.width() - strokeWidth,
-                            pixelBottom - strokeWidth),
-                    10f,
-                    10f,
-                    pSelection);
-
-            if (editMode) {
-                Canvas fCanvas = fullCanvas.getCanvas();
-                fCanvas.drawBitmap(upArrow, xMiddlePoint - upArrow.getWidth() / 2, parent.controlToScreen(pixelTop) - upArrow.getHeight(), pSelKnob);
-                fCanvas.drawBitmap(downArrow, xMiddlePoint - downArrow.getWidth() / 2, parent.controlToScreen(pixelBottom), pSelKnob);
-            }
-
-            if(middleArea.height() >= spanCaptionBounds.height()) {
-                sCanvas.drawText(
-                        new StringBuilder()
-                                .append(toString())
-                                .append(" (")
-                                .append(minutesSelected / 60)
-                                .append("h ")
-                                .append(minutesSelected % 60)
-                                .append("m)").toString(),
-                        middleArea.centerX(),
-                        middleArea.centerY() + spanCaptionBounds.height() / 2,
-                        pSpanText);
-            }
+    private void drawSelection(Canvas canvas) {
+        // Selection is clipped to the scale area, the way the former per-span scale layer did
+        canvas.save();
+        canvas.clipRect(boundaries);
+        canvas.translate(boundaries.left, boundaries.top);
+
+        selectionRect.set(0, pixelTop, boundaries.width(), pixelBottom);
+        canvas.drawRoundRect(selectionRect, 10f, 10f, editMode ? pSelectionBoundaryEdit : pSelectionBoundary);
+
+        selectionRect.set(strokeWidth, pixelTop + strokeWidth, boundaries.width() - strokeWidth, pixelBottom - strokeWidth);
+        canvas.drawRoundRect(selectionRect, 10f, 10f, pSelection);
+
+        if (middleArea.height() >= spanCaptionBounds.height()) {
+            canvas.drawText(
+                    caption,
+                    middleArea.centerX(),
+                    middleArea.centerY() + spanCaptionBounds.height() / 2,
+                    pSpanText);
+        }
+        canvas.restore();
+
+        if (editMode) {
+            canvas.drawBitmap(upArrow, xMiddlePoint - upArrow.getWidth() / 2, parent.controlToScreen(pixelTop) - upArrow.getHeight(), pSelKnob);
+            canvas.drawBitmap(downArrow, xMiddlePoint - downArrow.getWidth() / 2, parent.controlToScreen(pixelBottom), pSelKnob);
         }
     }
 